@@ -20,7 +20,7 @@ rem of arguments (up to the command line limit, anyway).
 set JCSMP_CMD_LINE_ARGS=%1
 if ""%1""=="""" goto errorMsg
 set FOUND=1
-for %%i in (introsamples.AdPubAck introsamples.AsyncCacheRequest introsamples.BlockingSubscriber introsamples.DirectPubSub introsamples.DtoPubSub introsamples.EventMonitor introsamples.intro.HelloWorldPub introsamples.intro.HelloWorldQueuePub introsamples.intro.HelloWorldQueueSub introsamples.intro.HelloWorldSub introsamples.MessageSelectorsOnQueue introsamples.MessageTTLAndDeadMessageQueue introsamples.NoLocalPubSub introsamples.PerfSempRequest introsamples.QueueProvisionAndBrowse introsamples.QueueProvisionAndRequestActiveFlowIndication introsamples.Replication introsamples.RRDirectReplier introsamples.RRDirectRequester introsamples.RRGuaranteedReplier introsamples.RRGuaranteedRequester introsamples.SDTPubSubMsgIndep introsamples.SecureSession introsamples.SempGetOverMB introsamples.SempHttpSetRequest introsamples.SempPagingRequests introsamples.SimpleFlowToQueue introsamples.SimpleFlowToTopic introsamples.SubscribeOnBehalfOfClient introsamples.SyncCacheRequest introsamples.TopicToQueueMapping introsamples.Transactions) do (
+for %%i in (introsamples.AdPubAck introsamples.AdPubAsync introsamples.AdPubNonBlocking introsamples.AdPubRetain introsamples.AdPubSpool introsamples.AdPubStreamFile introsamples.AdSubStreamFile introsamples.AdSubZeroCopy introsamples.AsyncCacheRequest introsamples.BlockingSubscriber introsamples.CompressedPubSub introsamples.DictionaryCodecPubSub introsamples.DirectBufferPub introsamples.DirectPubConflate introsamples.DirectPubLinger introsamples.DirectPubSub introsamples.DirectPubSubBatch introsamples.DirectPubSubBatchReceive introsamples.DirectPubSubOrderedDispatch introsamples.DirectPubSubTimestamps introsamples.DtoPubSub introsamples.EventMonitor introsamples.intro.HelloWorldPub introsamples.intro.HelloWorldQueuePub introsamples.intro.HelloWorldQueueSub introsamples.intro.HelloWorldSub introsamples.MessageSelectorsOnQueue introsamples.MessageTTLAndDeadMessageQueue introsamples.MultiThreadPub introsamples.NoLocalPubSub introsamples.PerfSempRequest introsamples.PublishTemplatePub introsamples.QueueProvisionAndBrowse introsamples.QueueProvisionAndRequestActiveFlowIndication introsamples.Replication introsamples.RRDirectReplier introsamples.RRDirectRequester introsamples.RRGuaranteedReplier introsamples.RRGuaranteedRequester introsamples.SDTPubSubMsgIndep introsamples.SecureSession introsamples.SempGetOverMB introsamples.SempHttpSetRequest introsamples.SempPagingRequests introsamples.SendMultiplePub introsamples.SimpleFlowToQueue introsamples.SimpleFlowToTopic introsamples.SubscribeOnBehalfOfClient introsamples.SyncCacheRequest introsamples.TopicToQueueMapping introsamples.Transactions) do (
   if ""%%i""==""%1"" set FOUND=0
 )
 
@@ -69,9 +69,25 @@ goto end
 
 echo Expecting one of the following as the first argument:
 echo introsamples.AdPubAck
+echo introsamples.AdPubAsync
+echo introsamples.AdPubNonBlocking
+echo introsamples.AdPubRetain
+echo introsamples.AdPubSpool
+echo introsamples.AdPubStreamFile
+echo introsamples.AdSubStreamFile
+echo introsamples.AdSubZeroCopy
 echo introsamples.AsyncCacheRequest
 echo introsamples.BlockingSubscriber
+echo introsamples.CompressedPubSub
+echo introsamples.DictionaryCodecPubSub
+echo introsamples.DirectBufferPub
+echo introsamples.DirectPubConflate
+echo introsamples.DirectPubLinger
 echo introsamples.DirectPubSub
+echo introsamples.DirectPubSubBatch
+echo introsamples.DirectPubSubBatchReceive
+echo introsamples.DirectPubSubOrderedDispatch
+echo introsamples.DirectPubSubTimestamps
 echo introsamples.DtoPubSub
 echo introsamples.EventMonitor
 echo introsamples.intro.HelloWorldPub 
@@ -81,8 +97,10 @@ echo introsamples.intro.HelloWorldSub
 echo introsamples.MessageReplay
 echo introsamples.MessageSelectorsOnQueue
 echo introsamples.MessageTTLAndDeadMessageQueue
+echo introsamples.MultiThreadPub
 echo introsamples.NoLocalPubSub
 echo introsamples.PerfSempRequest
+echo introsamples.PublishTemplatePub
 echo introsamples.QueueProvisionAndBrowse
 echo introsamples.QueueProvisionAndRequestActiveFlowIndication
 echo introsamples.Replication
@@ -95,6 +113,7 @@ echo introsamples.SecureSession
 echo introsamples.SempGetOverMB
 echo introsamples.SempHttpSetRequest
 echo introsamples.SempPagingRequests
+echo introsamples.SendMultiplePub
 echo introsamples.SimpleFlowToQueue
 echo introsamples.SimpleFlowToTopic
 echo introsamples.SubscribeOnBehalfOfClient
@@ -23,9 +23,25 @@ lcp() {
 
 # First check the arguments
 sampleList=" introsamples.AdPubAck
+ introsamples.AdPubAsync
+ introsamples.AdPubNonBlocking
+ introsamples.AdPubRetain
+ introsamples.AdPubSpool
+ introsamples.AdPubStreamFile
+ introsamples.AdSubStreamFile
+ introsamples.AdSubZeroCopy
  introsamples.AsyncCacheRequest
  introsamples.BlockingSubscriber
+ introsamples.CompressedPubSub
+ introsamples.DictionaryCodecPubSub
+ introsamples.DirectBufferPub
+ introsamples.DirectPubConflate
+ introsamples.DirectPubLinger
  introsamples.DirectPubSub
+ introsamples.DirectPubSubBatch
+ introsamples.DirectPubSubBatchReceive
+ introsamples.DirectPubSubOrderedDispatch
+ introsamples.DirectPubSubTimestamps
  introsamples.DtoPubSub
  introsamples.EventMonitor
  introsamples.intro.HelloWorldPub 
@@ -35,8 +51,10 @@ sampleList=" introsamples.AdPubAck
  introsamples.MessageReplay 
  introsamples.MessageSelectorsOnQueue
  introsamples.MessageTTLAndDeadMessageQueue
+ introsamples.MultiThreadPub
  introsamples.NoLocalPubSub
  introsamples.PerfSempRequest
+ introsamples.PublishTemplatePub
  introsamples.QueueProvisionAndBrowse
  introsamples.QueueProvisionAndRequestActiveFlowIndication
  introsamples.Replication
@@ -49,6 +67,7 @@ sampleList=" introsamples.AdPubAck
  introsamples.SempGetOverMB
  introsamples.SempHttpSetRequest
  introsamples.SempPagingRequests
+ introsamples.SendMultiplePub
  introsamples.SimpleFlowToQueue
  introsamples.SimpleFlowToTopic
  introsamples.SubscribeOnBehalfOfClient
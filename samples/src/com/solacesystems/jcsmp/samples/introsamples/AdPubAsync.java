@@ -0,0 +1,187 @@
+/**
+ * AdPubAsync.java
+ *
+ * This sample shows pipelined Guaranteed Delivery publishing, using
+ * completion handles to track message acknowledgments.
+ *
+ * AdPubAck keeps its own list of correlation structures and polls it to
+ * find acknowledged messages. Here, the producer is created with a
+ * PublishAckTracker as its event handler instead. Every send through the
+ * tracker returns a PublishHandle that:
+ *  - Is the message's correlation key, so no lookup is required when the
+ *    acknowledgment or rejection arrives.
+ *  - Can be polled (isDone()), waited on (await()) or observed through a
+ *    CompletionListener.
+ *  - Is returned to a pool with release() once the application is done
+ *    with it, so publishing at a high rate does not allocate a new
+ *    correlation object per message.
+ *
+ * The sample keeps up to a fixed number of messages in flight. Their
+ * handles are kept in a ring, oldest first: once the ring is full, the
+ * oldest handle is waited on and released before the next send, which
+ * then reuses it. The sample prints how many handles were created, which
+ * stays at about the number of messages in flight however many messages
+ * are sent.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker.PublishHandle;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class AdPubAsync extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	int inFlight = 100;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strInFlight = conf.getArgBag().get("-w");
+			if (strInFlight != null)
+				inFlight = Integer.valueOf(strInFlight);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || inFlight < 1)
+			printUsage(parser.isSecure());
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-w number]\t Number of messages in flight, default: 100\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Waits for a handle, reports a failure and returns it to the pool.
+	 */
+	void complete(PublishHandle handle) throws InterruptedException {
+		if (!handle.await(30000)) {
+			// The handle cannot be released while pending.
+			System.out.printf("Timed out waiting for message %s\n", handle);
+			return;
+		}
+		if (!handle.isSuccess()) {
+			System.out.printf("Message %s rejected, error was %s\n", handle, handle.getCause());
+		}
+		handle.release();
+	}
+
+	public AdPubAsync() {
+	}
+
+	public static void main(String[] args) {
+		AdPubAsync app = new AdPubAsync();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Count completions as they happen. The listener is invoked from
+			// the API thread, so it only updates counters.
+			final AtomicInteger acked = new AtomicInteger();
+			final AtomicInteger rejected = new AtomicInteger();
+			final PublishAckTracker tracker = new PublishAckTracker(new PublishAckTracker.CompletionListener() {
+				public void onComplete(PublishHandle handle) {
+					if (handle.isSuccess())
+						acked.incrementAndGet();
+					else
+						rejected.incrementAndGet();
+				}
+			});
+
+			// Acquire a message producer and open the data channel to
+			// the appliance. The tracker is the producer's event handler.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(tracker);
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic t = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			// Handles of the messages in flight: message i uses slot
+			// i % inFlight, so the slot about to be reused holds the oldest.
+			final PublishHandle[] handles = new PublishHandle[inFlight];
+
+			// Send without waiting for acknowledgments, as long as fewer
+			// than inFlight messages are outstanding. Otherwise, wait for
+			// the oldest message and release its handle first.
+			for (int i = 0; i < count; i++) {
+				int slot = i % inFlight;
+				if (handles[slot] != null) {
+					complete(handles[slot]);
+					handles[slot] = null;
+				}
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.writeAttachment(SampleUtils.attachmentText.getBytes());
+				msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+				handles[slot] = tracker.send(prod, msg, t);
+			}
+			System.out.printf("Sent %d messages, %d awaiting acknowledgment.\n", count, tracker.getOutstanding());
+
+			// Wait for the last messages, oldest first.
+			for (int i = count; i < count + inFlight; i++) {
+				int slot = i % inFlight;
+				if (handles[slot] != null) {
+					complete(handles[slot]);
+					handles[slot] = null;
+				}
+			}
+
+			System.out.printf("Created %d handles for %d messages.\n", tracker.getHandleCount(), count);
+			System.out.printf("Acknowledged: %d, rejected: %d\n", acked.get(), rejected.get());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for acknowledgments, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
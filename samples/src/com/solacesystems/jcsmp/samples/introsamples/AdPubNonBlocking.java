@@ -0,0 +1,233 @@
+/**
+ * AdPubNonBlocking.java
+ *
+ * This sample shows how to publish Guaranteed messages from an
+ * event-loop thread that must never block.
+ *
+ * XMLMessageProducer#send() blocks the calling thread while the
+ * Guaranteed publish window is closed, waiting for acknowledgments from
+ * the appliance. To avoid this, the sample publishes through a
+ * PublishAckTracker with a window no larger than the session's
+ * PUB_ACK_WINDOW_SIZE:
+ *  - PublishAckTracker#trySend() returns null instead of sending when
+ *    the window is full.
+ *  - The publishing task then simply returns, freeing the event-loop
+ *    thread.
+ *  - When acknowledgments free space in the window, the tracker's
+ *    WritabilityListener schedules the publishing task on the event loop
+ *    again.
+ *
+ * With the -a option, the application window adapts between a minimum
+ * and the publish window size, based on the measured acknowledgment
+ * round-trip time (see AdaptiveWindow). A fixed window is always wrong
+ * somewhere: too small for high-latency links, and larger than needed,
+ * holding more unacknowledged messages in memory, on low-latency links.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.AdaptiveWindow;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker.PublishHandle;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class AdPubNonBlocking extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 10000;
+	int pubWindow = 50;
+	// Minimum adaptive window, 0 for a fixed window.
+	int minWindow = 0;
+
+	// A single-threaded executor standing in for the application's event
+	// loop.
+	final ExecutorService eventLoop = Executors.newSingleThreadExecutor();
+	// Number of messages handed to the tracker so far. Only accessed from
+	// the event loop.
+	int sent = 0;
+	// Number of times the publishing task found the window full.
+	volatile int wouldBlock = 0;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strWindow = conf.getArgBag().get("-w");
+			if (strWindow != null)
+				pubWindow = Integer.valueOf(strWindow);
+			String strMin = conf.getArgBag().get("-a");
+			if (strMin != null)
+				minWindow = Integer.valueOf(strMin);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (pubWindow < 1 || pubWindow > 255 || minWindow < 0 || minWindow > pubWindow)
+			printUsage(parser.isSecure());
+
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.PUB_ACK_WINDOW_SIZE, pubWindow);
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 10000\n";
+		strusage += "\t[-w number]\t Publish window size (1-255), default: 50\n";
+		strusage += "\t[-a number]\t Adapt the window between this minimum and the publish window size\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Publishes until all messages are sent or the window is full. Runs on
+	 * the event loop, and never blocks.
+	 */
+	class PublishTask implements Runnable {
+		private final PublishAckTracker tracker;
+		private final Topic topic;
+
+		PublishTask(PublishAckTracker tracker, Topic topic) {
+			this.tracker = tracker;
+			this.topic = topic;
+		}
+
+		public void run() {
+			try {
+				while (sent < count) {
+					BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+					msg.writeAttachment(SampleUtils.attachmentText.getBytes());
+					msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+					if (tracker.trySend(prod, msg, topic) == null) {
+						// Window full: the WritabilityListener reschedules
+						// this task.
+						wouldBlock++;
+						return;
+					}
+					sent++;
+				}
+			} catch (JCSMPException ex) {
+				// Exit rather than leave the main thread waiting for
+				// acknowledgements that will never come.
+				System.err.println("Encountered a JCSMPException while publishing, exiting... " + ex.getMessage());
+				finish(1);
+			}
+		}
+	}
+
+	public AdPubNonBlocking() {
+	}
+
+	public static void main(String[] args) {
+		AdPubNonBlocking app = new AdPubNonBlocking();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final CountDownLatch allDone = new CountDownLatch(count);
+			final AtomicInteger rejected = new AtomicInteger();
+			final PublishAckTracker tracker = new PublishAckTracker(new PublishAckTracker.CompletionListener() {
+				public void onComplete(PublishHandle handle) {
+					if (!handle.isSuccess())
+						rejected.incrementAndGet();
+					handle.release();
+					allDone.countDown();
+				}
+			});
+
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(tracker);
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			final PublishTask task = new PublishTask(tracker, topic);
+
+			// Keep the application window within the API's publish window so
+			// that send() never has to block.
+			int window = (Integer) session.getProperty(JCSMPProperties.PUB_ACK_WINDOW_SIZE);
+			PublishAckTracker.WritabilityListener writable = new PublishAckTracker.WritabilityListener() {
+				public void onWritable() {
+					eventLoop.execute(task);
+				}
+			};
+			if (minWindow > 0) {
+				tracker.setAdaptiveWindow(new AdaptiveWindow(minWindow, window, minWindow), writable);
+			} else {
+				tracker.setWindow(window, writable);
+			}
+
+			eventLoop.execute(task);
+			if (!allDone.await(60, TimeUnit.SECONDS)) {
+				System.out.printf("Timed out with %d messages unacknowledged.\n", allDone.getCount());
+			}
+
+			System.out.printf("Sent %d messages with window %d, %d rejected, window full %d times.\n",
+				count, window, rejected.get(), wouldBlock);
+			if (tracker.getAdaptiveWindow() != null) {
+				System.out.println("Adaptive window: " + tracker.getAdaptiveWindow());
+			}
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for acknowledgments, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+
+	@Override
+	protected void finish(final int status) {
+		eventLoop.shutdownNow();
+		super.finish(status);
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * AdPubRetain.java
+ *
+ * This sample shows how a Guaranteed publisher can keep unacknowledged
+ * messages available for republishing without keeping a second copy of
+ * them.
+ *
+ * The API holds every unacknowledged Guaranteed message until its
+ * acknowledgement arrives, so that it can retransmit it. A copy of the
+ * payload kept by the application for republishing, on the heap or off
+ * it, therefore only adds to the memory the API already uses. Instead,
+ * this sample:
+ *  - Attaches each sent message to its completion handle as user data.
+ *    It is the same object the API holds, so keeping it costs a reference.
+ *  - Drops the reference when the message is acknowledged.
+ *  - When a message is rejected, republishes the same message from the
+ *    application thread, as blocking calls are not allowed in the event
+ *    callback.
+ *  - Stops publishing while the payload bytes awaiting acknowledgement
+ *    exceed a budget, which bounds the memory held for them by the API.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker;
+import com.solacesystems.jcsmp.samples.introsamples.common.PublishAckTracker.PublishHandle;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class AdPubRetain extends SampleApp {
+	// Maximum number of times a rejected message is republished.
+	static final int MAX_RETRIES = 3;
+
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	int size = 10240;
+	long budget = 16L * 1024 * 1024;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strSize = conf.getArgBag().get("-s");
+			if (strSize != null)
+				size = Integer.valueOf(strSize);
+			String strBudget = conf.getArgBag().get("-m");
+			if (strBudget != null)
+				budget = Long.valueOf(strBudget) * 1024 * 1024;
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || size < 1 || budget < size)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-s bytes]\t Payload size, default: 10240\n";
+		strusage += "\t[-m megabytes]\t Budget for unacknowledged payloads, default: 16\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * A sent message, kept until it is acknowledged or given up on.
+	 */
+	static final class SentMsg {
+		final long seq;
+		final BytesXMLMessage msg;
+		int attempts = 1;
+
+		SentMsg(long seq, BytesXMLMessage msg) {
+			this.seq = seq;
+			this.msg = msg;
+		}
+	}
+
+	public AdPubRetain() {
+	}
+
+	public static void main(String[] args) {
+		AdPubRetain app = new AdPubRetain();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final ConcurrentLinkedQueue<SentMsg> rejected = new ConcurrentLinkedQueue<SentMsg>();
+			final AtomicLong inFlightBytes = new AtomicLong();
+			final AtomicInteger done = new AtomicInteger();
+			final AtomicInteger failed = new AtomicInteger();
+
+			// Acknowledged messages drop their reference. Rejected messages
+			// are handed to the application thread for republishing.
+			final PublishAckTracker tracker = new PublishAckTracker(new PublishAckTracker.CompletionListener() {
+				public void onComplete(PublishHandle handle) {
+					SentMsg sent = (SentMsg) handle.getUserData();
+					if (handle.isSuccess()) {
+						inFlightBytes.addAndGet(-size);
+						done.incrementAndGet();
+					} else if (sent.attempts < MAX_RETRIES) {
+						System.out.printf("Message %d rejected (%s), will republish.\n", sent.seq, handle.getCause());
+						rejected.add(sent);
+					} else {
+						System.out.printf("Message %d rejected (%s), giving up.\n", sent.seq, handle.getCause());
+						inFlightBytes.addAndGet(-size);
+						failed.incrementAndGet();
+						done.incrementAndGet();
+					}
+					handle.release();
+				}
+			});
+
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(tracker);
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			final byte[] payload = new byte[size];
+			int sentCount = 0;
+			long start = System.currentTimeMillis();
+			while (done.get() < count) {
+				SentMsg retry = rejected.poll();
+				if (retry != null) {
+					retry.attempts++;
+					tracker.send(prod, retry.msg, topic, retry);
+					continue;
+				}
+				if (sentCount < count && inFlightBytes.get() + size <= budget) {
+					// writeAttachment() copies the payload into the message,
+					// so the same array is reused for every message.
+					payload[0] = (byte) sentCount;
+					BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+					msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+					msg.writeAttachment(payload);
+					inFlightBytes.addAndGet(size);
+					// The message must be attached before the send: the
+					// acknowledgement can arrive before send() returns.
+					tracker.send(prod, msg, topic, new SentMsg(sentCount, msg));
+					sentCount++;
+					continue;
+				}
+				// Over budget, or all messages sent: wait for acknowledgments.
+				Thread.sleep(1);
+				if (System.currentTimeMillis() - start > 60000) {
+					System.out.printf("Timed out with %d messages unacknowledged.\n", tracker.getOutstanding());
+					break;
+				}
+			}
+
+			System.out.printf("Published %d messages of %d bytes, %d failed, %d bytes still unacknowledged.\n",
+				sentCount, size, failed.get(), inFlightBytes.get());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for acknowledgments, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
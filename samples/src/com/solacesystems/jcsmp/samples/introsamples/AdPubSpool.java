@@ -0,0 +1,192 @@
+/**
+ * AdPubSpool.java
+ *
+ * This sample shows how a Guaranteed publisher can keep publishing while
+ * the session reconnects, by spooling messages to a memory-mapped file and
+ * publishing them once the session is back.
+ *
+ * When the connection to the appliance is lost, a publisher blocks in
+ * send() until the session has reconnected and the messages in flight are
+ * republished, which stalls the application thread. With a
+ * SpoolingPublisher, the application thread instead appends messages to a
+ * MessageSpool while the session is reconnecting. Once it has reconnected,
+ * a drain thread publishes the spooled messages in order, before any new
+ * message. When the spool is full, messages are either rejected or the
+ * application thread waits for space, as selected with -o.
+ *
+ * To see spooling in action, interrupt the connection to the appliance
+ * while the sample is running, for instance by disabling the client's
+ * Message VPN or client username for a few seconds.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.solacesystems.jcsmp.JCSMPChannelProperties;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.SessionEventArgs;
+import com.solacesystems.jcsmp.SessionEventHandler;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.MessageSpool;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+import com.solacesystems.jcsmp.samples.introsamples.common.SpoolingPublisher;
+
+public class AdPubSpool extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	SpoolingPublisher publisher = null;
+	MessageSpool spool = null;
+	int count = 10000;
+	long intervalMs = 10;
+	int spoolSize = 16 * 1024 * 1024;
+	SpoolingPublisher.OverflowPolicy policy = SpoolingPublisher.OverflowPolicy.BLOCK;
+	File spoolFile = null;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strInterval = conf.getArgBag().get("-i");
+			if (strInterval != null)
+				intervalMs = Long.valueOf(strInterval);
+			String strSpool = conf.getArgBag().get("-m");
+			if (strSpool != null)
+				spoolSize = Integer.valueOf(strSpool) * 1024 * 1024;
+			String strPolicy = conf.getArgBag().get("-o");
+			if (strPolicy != null)
+				policy = SpoolingPublisher.OverflowPolicy.valueOf(strPolicy.toUpperCase());
+			String strFile = conf.getArgBag().get("-f");
+			if (strFile != null)
+				spoolFile = new File(strFile);
+		} catch (IllegalArgumentException e) {
+			// Also covers NumberFormatException.
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || intervalMs < 0 || spoolSize < 1)
+			printUsage(parser.isSecure());
+
+		try {
+			if (spoolFile == null) {
+				spoolFile = File.createTempFile("AdPubSpool", ".spool");
+				spoolFile.deleteOnExit();
+			}
+			spool = new MessageSpool(spoolFile, spoolSize);
+		} catch (Exception ex) {
+			System.err.println("Cannot create spool file: " + ex.getMessage());
+			finish(1);
+		}
+		publisher = new SpoolingPublisher(spool, policy);
+
+		// Keep reconnecting for as long as the sample runs, so that
+		// messages are spooled rather than lost when the connection drops.
+		JCSMPChannelProperties cp = new JCSMPChannelProperties();
+		cp.setReconnectRetries(-1);
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.CLIENT_CHANNEL_PROPERTIES, cp);
+
+		session = SampleUtils.newSession(conf, new SessionEventHandler() {
+			public void handleEvent(SessionEventArgs event) {
+				System.out.printf("Received Session Event %s with info %s\n", event.getEvent(), event.getInfo());
+				publisher.handleEvent(event);
+			}
+		}, extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 10000\n";
+		strusage += "\t[-i ms]\t\t Interval between messages, default: 10\n";
+		strusage += "\t[-m megabytes]\t Spool size, default: 16\n";
+		strusage += "\t[-o policy]\t Spool overflow policy, REJECT or BLOCK, default: BLOCK\n";
+		strusage += "\t[-f file]\t Spool file, default: a temporary file\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public AdPubSpool() {
+	}
+
+	public static void main(String[] args) {
+		AdPubSpool app = new AdPubSpool();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			publisher.setProducer(prod);
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final byte[] payload = SampleUtils.attachmentText.getBytes();
+			int rejected = 0;
+			for (int i = 0; i < count; i++) {
+				if (!publisher.publish(SampleUtils.SAMPLE_TOPIC, payload))
+					rejected++;
+				if (intervalMs > 0)
+					Thread.sleep(intervalMs);
+			}
+
+			// Wait for the drain thread to publish the last spooled messages.
+			while (publisher.isSpooling()) {
+				System.out.printf("Waiting for %d spooled messages to be published.\n", spool.size());
+				Thread.sleep(1000);
+			}
+			if (publisher.isDown()) {
+				System.err.printf("Session is down, %d spooled messages not published.\n", spool.size());
+				spool.close();
+				finish(1);
+			}
+
+			System.out.printf("Published %d messages, %d of them through the spool, %d rejected, %d failed.\n",
+				count - rejected - publisher.getFailedCount(), publisher.getSpooledCount(), rejected,
+				publisher.getFailedCount());
+			spool.close();
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while publishing, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
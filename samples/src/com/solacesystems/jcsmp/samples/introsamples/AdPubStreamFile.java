@@ -0,0 +1,200 @@
+/**
+ * AdPubStreamFile.java
+ *
+ * This sample shows how to publish a file of any size as a sequence of
+ * Guaranteed messages, without loading it into memory.
+ *
+ * Large messaging lets the API segment big messages, but the application
+ * must still build each message from a single array holding the whole
+ * payload. A StreamingSender instead reads the file one segment at a time
+ * into a reused buffer and publishes each segment as its own message, with
+ * user properties identifying the transfer and the segment's position.
+ * The Guaranteed publish window bounds the number of segments held by the
+ * API until they are acknowledged, so memory use is bounded by the segment
+ * size times the window size, whatever the file size.
+ *
+ * Without -f, the sample publishes a generated temporary file. Start
+ * AdSubStreamFile first to receive it.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPStreamingPublishEventHandler;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+import com.solacesystems.jcsmp.samples.introsamples.common.StreamingSender;
+
+public class AdPubStreamFile extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	File file = null;
+	long generatedSize = 64L * 1024 * 1024;
+	int segmentSize = 1024 * 1024;
+	int pubWindow = 50;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strFile = conf.getArgBag().get("-f");
+			if (strFile != null)
+				file = new File(strFile);
+			String strSize = conf.getArgBag().get("-m");
+			if (strSize != null)
+				generatedSize = Long.valueOf(strSize) * 1024 * 1024;
+			String strSegment = conf.getArgBag().get("-s");
+			if (strSegment != null)
+				segmentSize = Integer.valueOf(strSegment);
+			String strWindow = conf.getArgBag().get("-w");
+			if (strWindow != null)
+				pubWindow = Integer.valueOf(strWindow);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (generatedSize < 0 || segmentSize < 1 || pubWindow < 1 || pubWindow > 255)
+			printUsage(parser.isSecure());
+		if (file != null && !file.canRead()) {
+			System.err.println("Cannot read file " + file);
+			finish(1);
+		}
+
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.PUB_ACK_WINDOW_SIZE, pubWindow);
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-f file]\t File to publish, default: a generated file\n";
+		strusage += "\t[-m megabytes]\t Size of the generated file, default: 64\n";
+		strusage += "\t[-s bytes]\t Segment size, default: 1048576\n";
+		strusage += "\t[-w window]\t Guaranteed publish window size (1-255), default: 50\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Writes a temporary file of the requested size.
+	 */
+	File generateFile() throws Exception {
+		File generated = File.createTempFile("AdPubStreamFile", ".dat");
+		generated.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(generated);
+		try {
+			byte[] block = new byte[65536];
+			for (long written = 0; written < generatedSize; written += block.length) {
+				block[0] = (byte) (written / block.length);
+				out.write(block, 0, (int) Math.min(block.length, generatedSize - written));
+			}
+		} finally {
+			out.close();
+		}
+		return generated;
+	}
+
+	public AdPubStreamFile() {
+	}
+
+	public static void main(String[] args) {
+		AdPubStreamFile app = new AdPubStreamFile();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			if (file == null)
+				file = generateFile();
+
+			final AtomicInteger acked = new AtomicInteger();
+			final AtomicInteger failed = new AtomicInteger();
+
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new JCSMPStreamingPublishEventHandler() {
+				public void responseReceived(String messageID) {
+					acked.incrementAndGet();
+				}
+
+				public void handleError(String messageID, JCSMPException cause, long timestamp) {
+					System.err.println("Segment rejected: " + cause.getMessage());
+					failed.incrementAndGet();
+				}
+			});
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			StreamingSender sender = new StreamingSender(prod, segmentSize);
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			int segments = (int) Math.max(1, (length + segmentSize - 1) / segmentSize);
+			long start = System.nanoTime();
+			String streamId;
+			try {
+				streamId = sender.send(channel, topic);
+			} finally {
+				raf.close();
+				sender.close();
+			}
+
+			// Wait for the last segments to be acknowledged.
+			long deadline = System.currentTimeMillis() + 30000;
+			while (acked.get() + failed.get() < segments && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("Published %s (%d bytes) as stream %s: %d segments, %d acknowledged, %d rejected, %.1f MB/s.\n",
+				file, length, streamId, segments, acked.get(), failed.get(), length * 1000.0 / elapsed);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for acknowledgments, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
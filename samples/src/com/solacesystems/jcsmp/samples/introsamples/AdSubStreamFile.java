@@ -0,0 +1,204 @@
+/**
+ * AdSubStreamFile.java
+ *
+ * This sample shows how to receive files published by AdPubStreamFile,
+ * writing each segment to disk as it arrives instead of reassembling the
+ * file in memory.
+ *
+ * When large messages are reassembled into a single payload, every message
+ * being received holds a heap array the size of the whole message, and
+ * several large messages arriving at once can exhaust the heap or cause
+ * long garbage collections. A StreamingReceiver instead writes each segment
+ * published by a StreamingSender to a channel, directly from the received
+ * message's buffer, so that heap use does not depend on the file sizes or
+ * on the number of files received concurrently.
+ *
+ * The sample binds a flow to a non-durable Topic Endpoint subscribed to
+ * the sample topic, so that segments are received in order and without
+ * loss, and writes each received file to a directory. Start it before
+ * AdPubStreamFile. Files are named after their stream id, which comes off
+ * the wire: a stream whose id is not a UUID, as StreamingSender generates,
+ * is failed rather than written outside the directory.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.FlowReceiver;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.TopicEndpoint;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+import com.solacesystems.jcsmp.samples.introsamples.common.StreamingReceiver;
+
+public class AdSubStreamFile extends SampleApp {
+	FlowReceiver receiver = null;
+	SessionConfiguration conf = null;
+	File directory = null;
+	int runSeconds = 60;
+	int idleSeconds = 30;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strDir = conf.getArgBag().get("-d");
+			directory = new File((strDir != null) ? strDir : System.getProperty("java.io.tmpdir"));
+			String strRun = conf.getArgBag().get("-t");
+			if (strRun != null)
+				runSeconds = Integer.valueOf(strRun);
+			String strIdle = conf.getArgBag().get("-i");
+			if (strIdle != null)
+				idleSeconds = Integer.valueOf(strIdle);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (runSeconds < 1 || idleSeconds < 1)
+			printUsage(parser.isSecure());
+		if (!directory.isDirectory() || !directory.canWrite()) {
+			System.err.println("Cannot write to directory " + directory);
+			finish(1);
+		}
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-d directory]\t Directory to write received files to, default: temporary directory\n";
+		strusage += "\t[-t seconds]\t Time to receive for, default: 60\n";
+		strusage += "\t[-i seconds]\t Time to wait for the next segment of a file, default: 30\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Accepts only a UUID in its canonical form, so that file names built
+	 * from the id stay in the directory.
+	 */
+	static void checkStreamId(String streamId) throws IOException {
+		try {
+			if (UUID.fromString(streamId).toString().equals(streamId))
+				return;
+		} catch (IllegalArgumentException e) {
+		}
+		throw new IOException("Invalid stream id");
+	}
+
+	public AdSubStreamFile() {
+	}
+
+	public static void main(String[] args) {
+		AdSubStreamFile app = new AdSubStreamFile();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Each file is written to a file named after its stream id, and
+			// renamed once complete.
+			final Map<String, File> files = new HashMap<String, File>();
+			final StreamingReceiver streamingReceiver = new StreamingReceiver(new StreamingReceiver.StreamHandler() {
+				public WritableByteChannel open(String streamId, long length) throws IOException {
+					checkStreamId(streamId);
+					File file = new File(directory, streamId + ".part");
+					files.put(streamId, file);
+					System.out.printf("Receiving stream %s (%d bytes).\n", streamId, length);
+					return new FileOutputStream(file).getChannel();
+				}
+
+				public void completed(String streamId, WritableByteChannel channel) {
+					File part = files.remove(streamId);
+					File file = new File(directory, streamId + ".dat");
+					try {
+						channel.close();
+						if (!part.renameTo(file))
+							throw new IOException("Cannot rename " + part);
+						System.out.printf("Received %s (%d bytes).\n", file, file.length());
+					} catch (IOException ex) {
+						System.err.println("Cannot complete stream " + streamId + ": " + ex.getMessage());
+					}
+				}
+
+				public void failed(String streamId, Exception cause) {
+					File part = files.remove(streamId);
+					if (part != null)
+						part.delete();
+					System.err.println("Stream " + streamId + " failed: " + cause.getMessage());
+				}
+			}, new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					System.out.println("Ignoring a message that is not a segment.");
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			}, idleSeconds * 1000L);
+
+			// Open the data channel to the appliance, and bind a flow to a
+			// Topic Endpoint subscribed to the topic AdPubStreamFile
+			// publishes to.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			printRouterInfo();
+			TopicEndpoint topicEndpoint = session.createNonDurableTopicEndpoint();
+			Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			receiver = session.createFlow(topicEndpoint, topic, streamingReceiver);
+			receiver.start();
+			System.out.println("Connected! Receiving for " + runSeconds + " seconds.");
+
+			Thread.sleep(runSeconds * 1000L);
+			receiver.close();
+			streamingReceiver.close();
+
+			System.out.printf("Received %d files, %d failed, %d incomplete.\n", streamingReceiver.getCompletedCount(),
+				streamingReceiver.getFailedCount(), streamingReceiver.getActiveCount());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing receiver... " + ex.getMessage());
+			if (receiver != null) {
+				receiver.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing receiver... " + ex.getMessage());
+			if (receiver != null) {
+				receiver.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
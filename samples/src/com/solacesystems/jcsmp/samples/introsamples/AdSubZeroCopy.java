@@ -0,0 +1,238 @@
+/**
+ * AdSubZeroCopy.java
+ *
+ * This sample shows how to hand received Guaranteed message payloads to
+ * other threads without copying them, and acknowledge each message once
+ * every thread is done with it.
+ *
+ * Reading a payload with readAttachmentBytes() copies it into a new array,
+ * which for large feeds doubles the memory traffic of receiving. The
+ * ByteBuffer returned by getAttachmentByteBuffer() instead views the array
+ * the message already holds. A ReceivedPayload wraps that view as a
+ * read-only buffer, and counts the threads referencing it: the listener
+ * hands each payload to two worker threads, each of which holds a
+ * reference, and the message is acknowledged when the last one is
+ * released. Until then it counts against the flow's window, which bounds
+ * the number of payloads in memory.
+ *
+ * The sample publishes messages to a temporary queue, and receives them on
+ * a flow with client acknowledgement. One worker computes a checksum of
+ * each payload, the other counts bytes.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.ConsumerFlowProperties;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.EndpointProperties;
+import com.solacesystems.jcsmp.FlowReceiver;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Queue;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.ReceivedPayload;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class AdSubZeroCopy extends SampleApp {
+	XMLMessageProducer prod = null;
+	FlowReceiver receiver = null;
+	SessionConfiguration conf = null;
+	int count = 10000;
+	int size = 4096;
+
+	// Number of messages acknowledged, once both workers released them.
+	final AtomicLong acked = new AtomicLong();
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strSize = conf.getArgBag().get("-s");
+			if (strSize != null)
+				size = Integer.valueOf(strSize);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || size < 1)
+			printUsage(parser.isSecure());
+
+		// Messages are acknowledged when their payload is released.
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.MESSAGE_ACK_MODE, JCSMPProperties.SUPPORTED_MESSAGE_ACK_CLIENT);
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 10000\n";
+		strusage += "\t[-s bytes]\t Payload size, default: 4096\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * A worker: reads payloads from its queue through their read-only
+	 * views, and releases them.
+	 */
+	abstract class Worker implements Runnable {
+		final BlockingQueue<ReceivedPayload> queue = new LinkedBlockingQueue<ReceivedPayload>();
+		final AtomicLong result = new AtomicLong();
+
+		abstract long process(ByteBuffer payload);
+
+		public void run() {
+			try {
+				while (true) {
+					ReceivedPayload payload = queue.take();
+					result.addAndGet(process(payload.getBuffer()));
+					if (payload.release())
+						acked.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				// Stop, leaving the flag set for the thread's owner.
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	static long checksum(ByteBuffer payload) {
+		long sum = 0;
+		while (payload.hasRemaining()) {
+			sum += payload.get() & 0xff;
+		}
+		return sum;
+	}
+
+	public AdSubZeroCopy() {
+	}
+
+	public static void main(String[] args) {
+		AdSubZeroCopy app = new AdSubZeroCopy();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final Worker checksummer = new Worker() {
+				long process(ByteBuffer payload) {
+					return checksum(payload);
+				}
+			};
+			final Worker counter = new Worker() {
+				long process(ByteBuffer payload) {
+					return payload.remaining();
+				}
+			};
+			Thread[] workers = { new Thread(checksummer, "Checksummer"), new Thread(counter, "Counter") };
+			for (Thread worker : workers) {
+				worker.setDaemon(true);
+				worker.start();
+			}
+
+			// Open the data channel to the appliance, and bind a flow to a
+			// temporary queue.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			Queue queue = session.createTemporaryQueue();
+			ConsumerFlowProperties flowProp = new ConsumerFlowProperties();
+			flowProp.setEndpoint(queue);
+			EndpointProperties endpointProp = new EndpointProperties();
+			endpointProp.setAccessType(EndpointProperties.ACCESSTYPE_EXCLUSIVE);
+			receiver = session.createFlow(new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					// Hand the payload to both workers, then drop the
+					// listener's own reference.
+					ReceivedPayload payload = new ReceivedPayload(msg, true);
+					checksummer.queue.add(payload.retain());
+					counter.queue.add(payload.retain());
+					payload.release();
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			}, flowProp, endpointProp);
+			receiver.start();
+			System.out.println("Connected!");
+
+			long expectedChecksum = 0;
+			byte[] data = new byte[size];
+			for (int i = 0; i < count; i++) {
+				for (int j = 0; j < size; j++) {
+					data[j] = (byte) (i + j);
+				}
+				expectedChecksum += checksum(ByteBuffer.wrap(data));
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+				msg.writeAttachment(data);
+				prod.send(msg, queue);
+			}
+
+			// Wait for all messages to be processed by both workers.
+			long deadline = System.currentTimeMillis() + 30000;
+			while (acked.get() < count && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			receiver.close();
+
+			System.out.printf("Acknowledged %d of %d messages, %d bytes, checksum %s.\n", acked.get(), count,
+				counter.result.get(), (checksummer.result.get() == expectedChecksum) ? "matched" : "MISMATCHED");
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing receiver and producer... " + ex.getMessage());
+			if (receiver != null) {
+				receiver.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing receiver and producer... " + ex.getMessage());
+			if (receiver != null) {
+				receiver.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
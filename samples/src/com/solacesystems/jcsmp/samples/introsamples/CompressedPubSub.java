@@ -0,0 +1,229 @@
+/**
+ * CompressedPubSub.java
+ *
+ * This sample shows how to compress large payloads on several threads
+ * while publishing them in order, and how to decompress them on the
+ * subscriber side.
+ *
+ * Session compression (the -z option of other samples) compresses the
+ * whole connection on the thread that writes to the socket, so a single
+ * session cannot publish faster than one core can compress. A
+ * CompressingPublisher instead compresses each payload independently on a
+ * pool of worker threads, and a writer thread publishes the compressed
+ * payloads in the order in which they were submitted. The subscriber
+ * restores each payload with CompressingPublisher.decompress().
+ *
+ * Compression uses the JDK's native zlib by default. The pure-Java jzlib
+ * library can be selected with -b; both produce the same format.
+ *
+ * Payloads that do not compress, such as images or data that is already
+ * compressed, are published uncompressed, and the publisher backs off from
+ * compressing while such payloads keep coming. Use -i to make a share of
+ * the payloads random, and therefore incompressible.
+ *
+ * The sample subscribes to the topic it publishes to, verifies the
+ * received payloads, and reports the publishing throughput and the
+ * compression ratio.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.CompressingPublisher;
+import com.solacesystems.jcsmp.samples.introsamples.common.CompressionBackend;
+import com.solacesystems.jcsmp.samples.introsamples.common.CompressionBackends;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class CompressedPubSub extends SampleApp {
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	int size = 65536;
+	int workers = Runtime.getRuntime().availableProcessors();
+	int level = 6;
+	int incompressiblePercent = 0;
+	CompressionBackend backend = CompressionBackends.JDK;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strSize = conf.getArgBag().get("-s");
+			if (strSize != null)
+				size = Integer.valueOf(strSize);
+			String strWorkers = conf.getArgBag().get("-w");
+			if (strWorkers != null)
+				workers = Integer.valueOf(strWorkers);
+			String strLevel = conf.getArgBag().get("-l");
+			if (strLevel != null)
+				level = Integer.valueOf(strLevel);
+			String strIncompressible = conf.getArgBag().get("-i");
+			if (strIncompressible != null)
+				incompressiblePercent = Integer.valueOf(strIncompressible);
+			String strBackend = conf.getArgBag().get("-b");
+			if (strBackend != null)
+				backend = CompressionBackends.forName(strBackend);
+		} catch (IllegalArgumentException e) {
+			// Also covers NumberFormatException.
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || size < 1 || workers < 1 || level < 1 || level > 9
+			|| incompressiblePercent < 0 || incompressiblePercent > 100)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-s bytes]\t Payload size, default: 65536\n";
+		strusage += "\t[-w number]\t Number of compression threads, default: number of processors\n";
+		strusage += "\t[-l level]\t Compression level, 1 (fastest) to 9 (best), default: 6\n";
+		strusage += "\t[-i percent]\t Share of incompressible payloads, default: 0\n";
+		strusage += "\t[-b backend]\t Compression backend, jdk or jzlib, default: jdk\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Builds a payload, tagged with its sequence number. The payload is
+	 * either repeated text or, for the requested share of sequence numbers,
+	 * random bytes.
+	 */
+	byte[] makePayload(int seq) {
+		byte[] payload = new byte[size];
+		Random random = new Random(seq);
+		if (random.nextInt(100) < incompressiblePercent) {
+			random.nextBytes(payload);
+		} else {
+			byte[] text = (SampleUtils.attachmentText + " ").getBytes();
+			for (int i = 0; i < size; i++) {
+				payload[i] = text[i % text.length];
+			}
+		}
+		payload[0] = (byte) seq;
+		return payload;
+	}
+
+	public CompressedPubSub() {
+	}
+
+	public static void main(String[] args) {
+		CompressedPubSub app = new CompressedPubSub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final AtomicLong received = new AtomicLong();
+			final AtomicLong mismatched = new AtomicLong();
+
+			// Acquire a message consumer and producer and open the data
+			// channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			cons = session.getMessageConsumer(new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					try {
+						byte[] payload = CompressingPublisher.decompress(msg, backend);
+						// Messages arrive in publish order.
+						if (!Arrays.equals(payload, makePayload((int) received.get())))
+							mismatched.incrementAndGet();
+					} catch (Exception ex) {
+						System.err.println("Cannot decompress message: " + ex.getMessage());
+						mismatched.incrementAndGet();
+					}
+					received.incrementAndGet();
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			});
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			session.addSubscription(topic);
+			cons.start();
+			System.out.println("Connected!");
+
+			CompressingPublisher compressor = new CompressingPublisher(prod, DeliveryMode.DIRECT, workers, level, backend);
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				compressor.send(makePayload(i), topic);
+			}
+			compressor.close();
+			long elapsed = System.nanoTime() - start;
+
+			// Allow time for the last messages to be received.
+			Thread.sleep(1000);
+			cons.stop();
+			session.removeSubscription(topic);
+
+			System.out.printf("Published %d messages with %d %s threads: %.1f MB/s uncompressed, ratio %.3f.\n",
+				compressor.getSentCount(), workers, backend.getName(), (double) count * size * 1000 / elapsed,
+				compressor.getCompressionRatio());
+			System.out.printf("%d messages published uncompressed, %d ms spent compressing.\n",
+				compressor.getBypassedCount(), compressor.getCompressNanos() / 1000000);
+			System.out.printf("Received %d messages, %d mismatched.\n", received.get(), mismatched.get());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
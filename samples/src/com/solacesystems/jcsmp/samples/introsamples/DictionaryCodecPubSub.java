@@ -0,0 +1,250 @@
+/**
+ * DictionaryCodecPubSub.java
+ *
+ * This sample shows how to compress small messages with a pre-shared
+ * dictionary, and how to decode them transparently on the subscriber side.
+ *
+ * Session compression compresses the connection as a whole, and cannot
+ * help with the size of messages stored on the appliance. Compressing each
+ * message on its own works poorly for small messages such as JSON or FIX
+ * orders, because every message has to spell out its field names. A
+ * DictionaryCodec primes zlib with a dictionary of strings typical of the
+ * messages, shared by publishers and subscribers, so that each message
+ * only encodes what differs.
+ *
+ * The publisher encodes payloads through a PayloadCodecRegistry, which
+ * records the codec and dictionary ids in user properties. The subscriber
+ * wraps its message listener in a DecodingListener, which restores the
+ * original payloads before the application sees them.
+ *
+ * With -z, the subscriber wraps its listener in a LazyDecodingListener
+ * instead, which decodes a payload only if the listener reads it. Orders
+ * are published to a topic per symbol, and the listener only reads the
+ * payloads of orders for one symbol: the other messages are counted from
+ * their destination alone, and never decoded. Lazy decoding only defers
+ * the codec: it saves nothing on payloads that are not encoded.
+ *
+ * The sample compares the encoded size with and without the dictionary.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.DecodingListener;
+import com.solacesystems.jcsmp.samples.introsamples.common.DictionaryCodec;
+import com.solacesystems.jcsmp.samples.introsamples.common.LazyDecodingListener;
+import com.solacesystems.jcsmp.samples.introsamples.common.LazyPayload;
+import com.solacesystems.jcsmp.samples.introsamples.common.PayloadCodecRegistry;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DictionaryCodecPubSub extends SampleApp {
+	// A dictionary for the sample's order messages. Real dictionaries are
+	// built from representative messages, most frequent strings last, and
+	// distributed to publishers and subscribers along with their id.
+	static final String DICTIONARY_ID = "orders-v1";
+	static final String DICTIONARY = "\"timeInForce\":\"GTC\",\"type\":\"MARKET\",\"side\":\"SELL\","
+		+ "{\"orderId\":\"symbol\":\"side\":\"BUY\",\"qty\":\"price\":\"account\":\"ACC-00"
+		+ "\",\"timeInForce\":\"DAY\",\"type\":\"LIMIT\"}";
+	static final String[] SYMBOLS = { "AAPL", "MSFT", "GOOG", "AMZN", "IBM" };
+
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	boolean lazy = false;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1)
+			printUsage(parser.isSecure());
+		lazy = (conf.getArgBag().get("-z") != null);
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-z]\t\t Decode payloads lazily, only for one symbol\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Builds a small JSON order.
+	 */
+	static String makeOrder(int seq) {
+		return String.format("{\"orderId\":%d,\"symbol\":\"%s\",\"side\":\"%s\",\"qty\":%d,\"price\":%d.%02d,"
+			+ "\"account\":\"ACC-%04d\",\"timeInForce\":\"DAY\",\"type\":\"LIMIT\"}",
+			seq, SYMBOLS[seq % SYMBOLS.length], (seq % 3 == 0) ? "SELL" : "BUY", 100 * (1 + seq % 10),
+			100 + seq % 50, seq % 100, seq % 64);
+	}
+
+	public DictionaryCodecPubSub() {
+	}
+
+	public static void main(String[] args) {
+		DictionaryCodecPubSub app = new DictionaryCodecPubSub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Both sides register the same codecs.
+			final PayloadCodecRegistry registry = new PayloadCodecRegistry();
+			DictionaryCodec codec = new DictionaryCodec(DICTIONARY_ID, DICTIONARY.getBytes("UTF-8"), 9);
+			DictionaryCodec plain = new DictionaryCodec(null, null, 9);
+			registry.register(codec);
+
+			final AtomicLong received = new AtomicLong();
+			final AtomicLong decoded = new AtomicLong();
+			final AtomicLong mismatched = new AtomicLong();
+			final String lazySymbol = SYMBOLS[0];
+
+			// Acquire a message consumer and producer and open the data
+			// channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			XMLMessageListener listener;
+			if (lazy) {
+				listener = new LazyDecodingListener(registry, new LazyPayload.Listener() {
+					public void onReceive(LazyPayload payload) {
+						// Messages arrive in publish order.
+						int seq = (int) received.getAndIncrement();
+						if (!payload.getDestination().getName().endsWith("/" + lazySymbol))
+							return;
+						try {
+							if (!new String(payload.getBytes()).equals(makeOrder(seq)))
+								mismatched.incrementAndGet();
+							decoded.incrementAndGet();
+						} catch (Exception ex) {
+							System.err.println("Cannot decode message payload: " + ex.getMessage());
+							mismatched.incrementAndGet();
+						}
+					}
+
+					public void onException(JCSMPException exception) {
+						System.err.println("Error occurred, printout follows.");
+						exception.printStackTrace();
+					}
+				});
+			} else {
+				listener = new DecodingListener(registry, new XMLMessageListener() {
+					public void onReceive(BytesXMLMessage msg) {
+						// The payload has already been decoded. Messages
+						// arrive in publish order.
+						byte[] payload = new byte[msg.getAttachmentContentLength()];
+						msg.readAttachmentBytes(payload);
+						if (!new String(payload).equals(makeOrder((int) received.getAndIncrement())))
+							mismatched.incrementAndGet();
+						decoded.incrementAndGet();
+					}
+
+					public void onException(JCSMPException exception) {
+						System.err.println("Error occurred, printout follows.");
+						exception.printStackTrace();
+					}
+				});
+			}
+			cons = session.getMessageConsumer(listener);
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			// Orders are published to a topic per symbol.
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC + "/>");
+			final Topic[] symbolTopics = new Topic[SYMBOLS.length];
+			for (int i = 0; i < SYMBOLS.length; i++) {
+				symbolTopics[i] = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC + "/" + SYMBOLS[i]);
+			}
+			session.addSubscription(topic);
+			cons.start();
+			System.out.println("Connected!");
+
+			long originalBytes = 0;
+			long encodedBytes = 0;
+			long plainBytes = 0;
+			for (int i = 0; i < count; i++) {
+				byte[] payload = makeOrder(i).getBytes("UTF-8");
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.setDeliveryMode(DeliveryMode.DIRECT);
+				registry.encode(msg, payload, codec);
+				prod.send(msg, symbolTopics[i % SYMBOLS.length]);
+
+				originalBytes += payload.length;
+				encodedBytes += msg.getAttachmentContentLength();
+				// For comparison only.
+				plainBytes += plain.encode(payload, 0, payload.length).length;
+			}
+
+			// Allow time for the last messages to be received.
+			Thread.sleep(1000);
+			cons.stop();
+			session.removeSubscription(topic);
+			codec.close();
+			plain.close();
+
+			System.out.printf("Average payload: %d bytes, %d with dictionary (ratio %.2f), %d without (ratio %.2f).\n",
+				originalBytes / count, encodedBytes / count, (double) originalBytes / encodedBytes,
+				plainBytes / count, (double) originalBytes / plainBytes);
+			System.out.printf("Received %d messages, decoded %d, %d mismatched.\n", received.get(), decoded.get(),
+				mismatched.get());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/**
+ * DirectBufferPub.java
+ *
+ * This sample shows how to publish large payloads held in caller-owned
+ * direct ByteBuffers with as few memory copies as the API allows.
+ *
+ * The naive approach copies the payload three times before it reaches the
+ * socket, and allocates twice per send: a temporary byte array is
+ * allocated and filled from the direct buffer, a new message is allocated
+ * and the array is copied into it, and the message is then copied into an
+ * intermediate direct buffer used by the API for the socket write. The
+ * API has no send variant that references a caller's buffer, so one copy
+ * into a heap array and one copy into the message remain; this sample
+ * removes the rest:
+ *  - The session is created with PUB_USE_INTERMEDIATE_DIRECT_BUF
+ *    disabled, so the message is written to the socket without first
+ *    being copied into an intermediate direct buffer.
+ *  - The payload is copied into a scratch array that is reused for every
+ *    send, and written into the message with the length-aware
+ *    writeAttachment(byte[], int, int).
+ *  - For Direct messages, the message itself is reused, so its content
+ *    buffer is only allocated once, for the largest payload. Guaranteed
+ *    messages are retained by the API until they are acknowledged, so a
+ *    new message is created for each of them.
+ *
+ * Ownership of each buffer is returned to the caller through a
+ * BufferReleaseListener once the API no longer references it. Because the
+ * attachment is copied into the message, the listener is called before
+ * the send call returns, and the buffer can immediately be refilled.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DirectBufferPub extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 100;
+	int size = 65536;
+	// Reused for every Direct send.
+	BytesXMLMessage directMsg = null;
+	// Holds the payload while it is written into the message; reused for
+	// every send and grown as needed.
+	byte[] scratch = new byte[0];
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strSize = conf.getArgBag().get("-s");
+			if (strSize != null)
+				size = Integer.valueOf(strSize);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || size < 1)
+			printUsage(parser.isSecure());
+
+		// Write messages straight to the socket instead of copying them
+		// into an intermediate direct buffer first.
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.PUB_USE_INTERMEDIATE_DIRECT_BUF, Boolean.FALSE);
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-t DELIVERY_MODE]\t Delivery mode (direct, persistent, non-persistent), default: direct\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 100\n";
+		strusage += "\t[-s bytes]\t Payload size, default: 65536\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * Notified when the API no longer references a buffer passed to
+	 * send(ByteBuffer, Destination, DeliveryMode, BufferReleaseListener).
+	 */
+	interface BufferReleaseListener {
+		void onRelease(ByteBuffer buffer);
+	}
+
+	/*
+	 * Sends the remaining bytes of a caller-owned buffer as the message
+	 * attachment, then hands the buffer back through the listener before
+	 * returning. The buffer's position is not modified.
+	 */
+	void send(ByteBuffer payload, Destination dest, DeliveryMode mode, BufferReleaseListener listener)
+		throws JCSMPException {
+		BytesXMLMessage msg;
+		if (mode == DeliveryMode.DIRECT) {
+			if (directMsg == null) {
+				directMsg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				directMsg.setDeliveryMode(DeliveryMode.DIRECT);
+			}
+			msg = directMsg;
+		} else {
+			msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(mode);
+		}
+		try {
+			int length = payload.remaining();
+			if (scratch.length < length)
+				scratch = new byte[length];
+			int position = payload.position();
+			payload.get(scratch, 0, length);
+			payload.position(position);
+			msg.writeAttachment(scratch, 0, length);
+			prod.send(msg, dest);
+		} finally {
+			// The attachment was copied into the message: the caller can
+			// reuse the buffer whether or not the send succeeded.
+			listener.onRelease(payload);
+		}
+	}
+
+	public DirectBufferPub() {
+	}
+
+	public static void main(String[] args) {
+		DirectBufferPub app = new DirectBufferPub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+
+			// A small application-owned pool of direct buffers. Buffers are
+			// taken from the pool, filled, sent and returned to the pool by
+			// the release listener.
+			final LinkedList<ByteBuffer> pool = new LinkedList<ByteBuffer>();
+			for (int i = 0; i < 2; i++) {
+				pool.add(ByteBuffer.allocateDirect(size));
+			}
+			final BufferReleaseListener releaser = new BufferReleaseListener() {
+				public void onRelease(ByteBuffer buffer) {
+					buffer.clear();
+					pool.add(buffer);
+				}
+			};
+
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				ByteBuffer buf = pool.poll();
+				while (buf.hasRemaining()) {
+					buf.put((byte) i);
+				}
+				buf.flip();
+				send(buf, topic, conf.getDeliveryMode(), releaser);
+			}
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			System.out.printf("Sent %d messages of %d bytes (%d ms).\n", count, size, elapsedMs);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * DirectPubConflate.java
+ *
+ * This sample shows how to conflate last-value Direct messages, such as
+ * prices, when the connection to the appliance cannot keep up with the
+ * publishing rate.
+ *
+ * A publisher that sends faster than its connection can write blocks in
+ * send(), and the updates it produces in the meantime are delivered late,
+ * by which time they are stale. With a ConflatingPublisher, the
+ * application thread never blocks: a writer thread sends the queued
+ * messages, and a new message replaces any queued message for the same
+ * topic. Subscribers receive fewer, but always recent, updates.
+ *
+ * The sample publishes updates for a number of instruments, each on its
+ * own topic, as fast as it can, and reports how many updates were
+ * conflated.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.ConflatingPublisher;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DirectPubConflate extends SampleApp {
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 1000000;
+	int keys = 100;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strKeys = conf.getArgBag().get("-k");
+			if (strKeys != null)
+				keys = Integer.valueOf(strKeys);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || keys < 1)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of updates to publish, default: 1000000\n";
+		strusage += "\t[-k number]\t Number of instruments (topics), default: 100\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubConflate() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubConflate app = new DirectPubConflate();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic[] topics = new Topic[keys];
+			for (int i = 0; i < keys; i++) {
+				topics[i] = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC + "/" + i);
+			}
+
+			ConflatingPublisher conflater = new ConflatingPublisher(prod, ConflatingPublisher.BY_DESTINATION);
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				// Queued messages belong to the ConflatingPublisher until
+				// written, so a new message is created for every update.
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.setDeliveryMode(DeliveryMode.DIRECT);
+				msg.writeAttachment(String.format("price=%d.%02d", 100 + i % 7, i % 100).getBytes());
+				conflater.send(msg, topics[i % keys]);
+			}
+			conflater.close();
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("Published %d updates in %d ms: %d sent, %d conflated.\n",
+				count, elapsed / 1000000, conflater.getSentCount(), conflater.getConflatedCount());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while publishing, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * DirectPubLinger.java
+ *
+ * This sample shows how to coalesce small Direct messages into batched
+ * network writes with a bounded delay, using a LingerPublisher.
+ *
+ * A publisher of small, frequent messages usually has to choose between
+ * one network write per message (TCP_NODELAY, the default) and the
+ * kernel's Nagle algorithm, which coalesces writes but can delay them by
+ * up to 40 ms. A LingerPublisher holds messages for at most the
+ * configured linger time (in microseconds), or until enough bytes are
+ * queued, and publishes them with a single sendMultiple() call. The
+ * linger time gives an explicit throughput/latency tradeoff.
+ *
+ * The sample publishes messages at a configurable interval and reports
+ * how many batches were written.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.LingerPublisher;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DirectPubLinger extends SampleApp {
+	XMLMessageProducer prod = null;
+	LingerPublisher linger = null;
+	SessionConfiguration conf = null;
+	int count = 10000;
+	long lingerMicros = 100;
+	int maxBytes = 16384;
+	long intervalMicros = 10;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strLinger = conf.getArgBag().get("-l");
+			if (strLinger != null)
+				lingerMicros = Long.valueOf(strLinger);
+			String strBytes = conf.getArgBag().get("-b");
+			if (strBytes != null)
+				maxBytes = Integer.valueOf(strBytes);
+			String strInterval = conf.getArgBag().get("-i");
+			if (strInterval != null)
+				intervalMicros = Long.valueOf(strInterval);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || lingerMicros < 0 || maxBytes < 1 || intervalMicros < 0)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 10000\n";
+		strusage += "\t[-l micros]\t Linger time, 0 to disable, default: 100\n";
+		strusage += "\t[-b bytes]\t Queued bytes that trigger an immediate write, default: 16384\n";
+		strusage += "\t[-i micros]\t Interval between messages, default: 10\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubLinger() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubLinger app = new DirectPubLinger();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance. sendMultiple() requires a streaming producer.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			linger = new LingerPublisher(prod, lingerMicros, maxBytes);
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			final byte[] payload = SampleUtils.attachmentText.getBytes();
+
+			for (int i = 0; i < count; i++) {
+				// Queued messages belong to the LingerPublisher until
+				// written, so a new message is created for every send.
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.writeAttachment(payload);
+				msg.setDeliveryMode(DeliveryMode.DIRECT);
+				linger.send(msg, topic);
+				if (intervalMicros > 0)
+					LockSupport.parkNanos(intervalMicros * 1000);
+			}
+			linger.close();
+
+			System.out.printf("Sent %d messages in %d writes (linger %d us, %.1f messages per write).\n",
+				linger.getMessageCount(), linger.getFlushCount(), lingerMicros,
+				(double) linger.getMessageCount() / Math.max(1, linger.getFlushCount()));
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while closing the LingerPublisher, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * DirectPubSubBatch.java
+ *
+ * This sample shows how to publish bursts of small Direct messages to the
+ * same topic as batched envelopes, and how to split the envelopes back
+ * into individual messages on the subscriber side.
+ *
+ * Every message published carries a full SMF header and requires a
+ * routing decision on the appliance. For payloads of a few hundred bytes
+ * or less, these costs dominate. A BatchingPublisher packs the payloads
+ * published to a topic into a single StreamMessage envelope, published
+ * when the configured number of payloads or bytes is reached, or when the
+ * linger time has elapsed. An UnbatchingListener on the subscriber passes
+ * each payload of an envelope to the application's message listener as a
+ * separate message.
+ *
+ * The sample subscribes to the topic it publishes to, and reports how
+ * many envelopes and messages were received.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.BatchingPublisher;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+import com.solacesystems.jcsmp.samples.introsamples.common.UnbatchingListener;
+
+public class DirectPubSubBatch extends SampleApp {
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 100000;
+	int batchSize = 50;
+	int size = 100;
+	long lingerMicros = 1000;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strBatch = conf.getArgBag().get("-b");
+			if (strBatch != null)
+				batchSize = Integer.valueOf(strBatch);
+			String strSize = conf.getArgBag().get("-s");
+			if (strSize != null)
+				size = Integer.valueOf(strSize);
+			String strLinger = conf.getArgBag().get("-l");
+			if (strLinger != null)
+				lingerMicros = Long.valueOf(strLinger);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || batchSize < 1 || size < 1 || lingerMicros < 0)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 100000\n";
+		strusage += "\t[-b number]\t Messages per envelope, default: 50\n";
+		strusage += "\t[-s bytes]\t Payload size, default: 100\n";
+		strusage += "\t[-l micros]\t Linger time, default: 1000\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubSubBatch() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubSubBatch app = new DirectPubSubBatch();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final AtomicLong received = new AtomicLong();
+			UnbatchingListener listener = new UnbatchingListener(new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					received.incrementAndGet();
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			});
+
+			// Acquire a message consumer and producer and open the data
+			// channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			cons = session.getMessageConsumer(listener);
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			session.addSubscription(topic);
+			cons.start();
+			System.out.println("Connected!");
+
+			BatchingPublisher batcher = new BatchingPublisher(prod, batchSize, Integer.MAX_VALUE, lingerMicros);
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				// Queued payloads belong to the BatchingPublisher.
+				byte[] payload = new byte[size];
+				payload[0] = (byte) i;
+				batcher.send(payload, topic);
+			}
+			batcher.close();
+			long elapsed = System.nanoTime() - start;
+
+			// Allow time for the last envelopes to be received.
+			Thread.sleep(1000);
+			cons.stop();
+			session.removeSubscription(topic);
+
+			System.out.printf("Published %d messages in %d envelopes (%.0f messages/s).\n",
+				batcher.getMessageCount(), batcher.getEnvelopeCount(), count * 1e9 / elapsed);
+			System.out.printf("Received %d messages in %d envelopes.\n", received.get(), listener.getEnvelopeCount());
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
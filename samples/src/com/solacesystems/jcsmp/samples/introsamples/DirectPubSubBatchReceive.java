@@ -0,0 +1,186 @@
+/**
+ * DirectPubSubBatchReceive.java
+ *
+ * This sample shows how to receive messages in batches, for processing in
+ * bulk.
+ *
+ * A message listener handles one message per call, so work with a fixed
+ * cost per call, such as a database insert, is paid for every message.
+ * A BatchReceiver takes messages from a consumer created without a
+ * listener, and passes them to a BatchListener in batches: a batch holds
+ * every message already received when the previous one was processed, up
+ * to a maximum. There is no waiting for a batch to fill, so a message is
+ * delayed only while the listener is busy, and batches grow with the
+ * backlog, which is when processing in bulk matters.
+ *
+ * The listener simulates a bulk insert of each batch, whose cost is a
+ * fixed delay per batch. A FlowReceiver created without a listener can be
+ * used in the same way as the XMLMessageConsumer used here.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.BatchReceiver;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DirectPubSubBatchReceive extends SampleApp {
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 100000;
+	int maxBatchSize = 500;
+	int insertDelayMs = 1;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strBatch = conf.getArgBag().get("-b");
+			if (strBatch != null)
+				maxBatchSize = Integer.valueOf(strBatch);
+			String strDelay = conf.getArgBag().get("-d");
+			if (strDelay != null)
+				insertDelayMs = Integer.valueOf(strDelay);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || maxBatchSize < 1 || insertDelayMs < 0)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 100000\n";
+		strusage += "\t[-b number]\t Maximum batch size, default: 500\n";
+		strusage += "\t[-d ms]\t\t Simulated cost of inserting a batch, default: 1\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubSubBatchReceive() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubSubBatchReceive app = new DirectPubSubBatchReceive();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a synchronous message consumer and a producer, and
+			// open the data channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			cons = session.getMessageConsumer((XMLMessageListener) null);
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			session.addSubscription(topic);
+			final AtomicLong insertedBytes = new AtomicLong();
+			BatchReceiver receiver = new BatchReceiver(cons, maxBatchSize, new BatchReceiver.BatchListener() {
+				public void onBatch(List<BytesXMLMessage> batch) {
+					// A bulk insert would write all payloads of the batch in
+					// one statement.
+					for (BytesXMLMessage msg : batch) {
+						insertedBytes.addAndGet(msg.getAttachmentContentLength());
+					}
+					if (insertDelayMs > 0) {
+						try {
+							Thread.sleep(insertDelayMs);
+						} catch (InterruptedException e) {
+							// The receiver's next receive() sees the flag.
+							Thread.currentThread().interrupt();
+						}
+					}
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			});
+			receiver.start();
+			System.out.println("Connected!");
+
+			long start = System.nanoTime();
+			BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.writeAttachment(SampleUtils.attachmentText.getBytes());
+			for (int i = 0; i < count; i++) {
+				prod.send(msg, topic);
+			}
+
+			// Wait for the last messages to be processed.
+			long deadline = System.currentTimeMillis() + 30000;
+			while (receiver.getMessageCount() < count && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+			receiver.close();
+			cons.stop();
+			session.removeSubscription(topic);
+
+			System.out.printf("Processed %d messages (%d bytes) in %d batches (average %.1f, largest %d) in %d ms.\n",
+				receiver.getMessageCount(), insertedBytes.get(), receiver.getBatchCount(),
+				(double) receiver.getMessageCount() / Math.max(1, receiver.getBatchCount()), receiver.getLargestBatch(),
+				elapsedMs);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * DirectPubSubOrderedDispatch.java
+ *
+ * This sample shows how to handle received messages on several threads,
+ * while keeping messages with the same key in order.
+ *
+ * A session calls its message listener on a single thread, so one slow
+ * message delays all the messages behind it, and handling uses one core.
+ * An OrderedDispatcher instead hands messages to a pool of worker threads.
+ * Messages are assigned to workers by key, here their destination: the
+ * messages of a topic are always handled by the same worker, in order,
+ * while messages on other topics are handled in parallel.
+ *
+ * The sample publishes messages round-robin to a number of topics. The
+ * messages on the first topic are slow to handle; the others are not held
+ * up by them. The listener checks that each topic's messages arrive in
+ * order, and the sample prints the number of messages handled by each
+ * worker and the largest backlog of its queue.
+ *
+ * Messages are handed to workers through lock-free rings. With -s, the
+ * wait strategy can be changed from blocking, which parks idle workers,
+ * to yielding or busy-spin, which wake up faster at the cost of CPU.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.OrderedDispatcher;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+import com.solacesystems.jcsmp.samples.introsamples.common.WaitStrategy;
+
+public class DirectPubSubOrderedDispatch extends SampleApp {
+	// Time spent handling each message on the slow topic.
+	static final long SLOW_HANDLING_NANOS = 200000;
+
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 100000;
+	int workerCount = 4;
+	int topicCount = 16;
+	int queueCapacity = 1024;
+	WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strWorkers = conf.getArgBag().get("-w");
+			if (strWorkers != null)
+				workerCount = Integer.valueOf(strWorkers);
+			String strTopics = conf.getArgBag().get("-k");
+			if (strTopics != null)
+				topicCount = Integer.valueOf(strTopics);
+			String strQueue = conf.getArgBag().get("-q");
+			if (strQueue != null)
+				queueCapacity = Integer.valueOf(strQueue);
+			String strWait = conf.getArgBag().get("-s");
+			if (strWait != null)
+				waitStrategy = WaitStrategy.valueOf(strWait.toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			// Includes NumberFormatException
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || workerCount < 1 || topicCount < 1 || queueCapacity < 1)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 100000\n";
+		strusage += "\t[-w number]\t Number of worker threads, default: 4\n";
+		strusage += "\t[-k number]\t Number of topics, default: 16\n";
+		strusage += "\t[-q number]\t Queue capacity of each worker, default: 1024\n";
+		strusage += "\t[-s strategy]\t Wait strategy (blocking, yielding, busy-spin), default: blocking\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubSubOrderedDispatch() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubSubOrderedDispatch app = new DirectPubSubOrderedDispatch();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			final Topic[] topics = new Topic[topicCount];
+			for (int i = 0; i < topicCount; i++) {
+				topics[i] = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC + "/" + i);
+			}
+			final String slowTopic = topics[0].getName();
+
+			// The last sequence number received per topic. Each topic is
+			// only updated by the worker handling it.
+			final Map<String, Long> lastSeq = new ConcurrentHashMap<String, Long>();
+			final AtomicLong received = new AtomicLong();
+			final AtomicLong outOfOrder = new AtomicLong();
+			OrderedDispatcher dispatcher = new OrderedDispatcher(new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					String topic = msg.getDestination().getName();
+					Long seq = msg.getSequenceNumber();
+					if (seq != null) {
+						Long last = lastSeq.put(topic, seq);
+						if (last != null && seq <= last)
+							outOfOrder.incrementAndGet();
+					}
+					if (topic.equals(slowTopic)) {
+						long until = System.nanoTime() + SLOW_HANDLING_NANOS;
+						while (System.nanoTime() < until) {
+							// Simulate slow handling.
+						}
+					}
+					received.incrementAndGet();
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			}, workerCount, queueCapacity, OrderedDispatcher.BY_DESTINATION, waitStrategy);
+
+			// Acquire a message consumer and producer and open the data
+			// channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			cons = session.getMessageConsumer(dispatcher);
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			final Topic wildcard = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC + "/>");
+			session.addSubscription(wildcard);
+			cons.start();
+			System.out.println("Connected!");
+
+			long start = System.nanoTime();
+			BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.writeAttachment(SampleUtils.attachmentText.getBytes());
+			for (int i = 0; i < count; i++) {
+				msg.setSequenceNumber(i + 1);
+				prod.send(msg, topics[i % topicCount]);
+			}
+
+			// Wait for the last messages to be handled.
+			long deadline = System.currentTimeMillis() + 30000;
+			while (received.get() < count && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+			cons.stop();
+			session.removeSubscription(wildcard);
+			dispatcher.close();
+
+			System.out.printf("Handled %d messages in %d ms with %s waiting, %d out of order.\n", received.get(),
+				elapsedMs, waitStrategy, outOfOrder.get());
+			for (int i = 0; i < dispatcher.getWorkerCount(); i++) {
+				System.out.printf("Worker %d: %d messages, largest backlog %d.\n", i, dispatcher.getHandledCount(i),
+					dispatcher.getMaxQueueDepth(i));
+			}
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * DirectPubSubTimestamps.java
+ *
+ * This sample shows how to timestamp messages and discard stale messages
+ * with a cached clock, instead of reading the system clock for every
+ * message.
+ *
+ * Enabling GENERATE_SEND_TIMESTAMPS or GENERATE_RCV_TIMESTAMPS makes the
+ * API read the system clock for each message, and an application checking
+ * the age of every received message reads it again. At high message
+ * rates, these reads become a measurable cost. Timestamps rarely need to
+ * be more accurate than a millisecond, so this sample reads the time from
+ * a Clock instead:
+ *  - Clocks.SYSTEM reads the system clock every time.
+ *  - Clocks.MONOTONIC reads System#nanoTime(), and never goes backwards.
+ *  - A Clocks.CachedClock returns a time updated every millisecond by a
+ *    single ticker thread, at the cost of a volatile read.
+ *
+ * The publisher sets each message's sender timestamp from the clock. The
+ * subscriber computes each message's age from the same clock, and discards
+ * messages older than the maximum age.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageConsumer;
+import com.solacesystems.jcsmp.XMLMessageListener;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.Clock;
+import com.solacesystems.jcsmp.samples.introsamples.common.Clocks;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class DirectPubSubTimestamps extends SampleApp {
+	// Number of reads used to measure the cost of reading the clock.
+	static final int CLOCK_READS = 10000000;
+
+	XMLMessageProducer prod = null;
+	XMLMessageConsumer cons = null;
+	SessionConfiguration conf = null;
+	int count = 100000;
+	long maxAgeMs = 1000;
+	Clock clock = null;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strAge = conf.getArgBag().get("-e");
+			if (strAge != null)
+				maxAgeMs = Long.valueOf(strAge);
+			String strClock = conf.getArgBag().get("-c");
+			clock = Clocks.forName((strClock != null) ? strClock : "cached", 1);
+		} catch (IllegalArgumentException e) {
+			// Includes NumberFormatException
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || maxAgeMs < 0)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 100000\n";
+		strusage += "\t[-c clock]\t Clock (system, monotonic, cached), default: cached\n";
+		strusage += "\t[-e ms]\t\t Maximum age of received messages, default: 1000\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public DirectPubSubTimestamps() {
+	}
+
+	public static void main(String[] args) {
+		DirectPubSubTimestamps app = new DirectPubSubTimestamps();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Measure the cost of reading the clock.
+			long start = System.nanoTime();
+			long sum = 0;
+			for (int i = 0; i < CLOCK_READS; i++) {
+				sum += clock.currentTimeMillis();
+			}
+			double readNanos = (double) (System.nanoTime() - start) / CLOCK_READS;
+			// Use the result, so that the reads are not optimized away.
+			if (sum == 0)
+				System.out.println("Clock returned zero.");
+
+			final AtomicLong received = new AtomicLong();
+			final AtomicLong stale = new AtomicLong();
+			final AtomicLong totalAge = new AtomicLong();
+
+			// Acquire a message consumer and producer and open the data
+			// channel to the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			cons = session.getMessageConsumer(new XMLMessageListener() {
+				public void onReceive(BytesXMLMessage msg) {
+					Long sent = msg.getSenderTimestamp();
+					long age = (sent != null) ? clock.currentTimeMillis() - sent : 0;
+					if (age > maxAgeMs) {
+						stale.incrementAndGet();
+						return;
+					}
+					totalAge.addAndGet(age);
+					received.incrementAndGet();
+				}
+
+				public void onException(JCSMPException exception) {
+					System.err.println("Error occurred, printout follows.");
+					exception.printStackTrace();
+				}
+			});
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			session.addSubscription(topic);
+			cons.start();
+			System.out.println("Connected!");
+
+			BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.writeAttachment(SampleUtils.attachmentText.getBytes());
+			for (int i = 0; i < count; i++) {
+				msg.setSenderTimestamp(clock.currentTimeMillis());
+				prod.send(msg, topic);
+			}
+
+			// Allow time for the last messages to be received.
+			Thread.sleep(1000);
+			cons.stop();
+			session.removeSubscription(topic);
+			if (clock instanceof Clocks.CachedClock)
+				((Clocks.CachedClock) clock).close();
+
+			System.out.printf("Clock %s: %.1f ns per read.\n", clock, readNanos);
+			System.out.printf("Received %d messages, average age %.2f ms, %d discarded as older than %d ms.\n",
+				received.get(), (double) totalAge.get() / Math.max(1, received.get()), stale.get(), maxAgeMs);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing consumer and producer... " + ex.getMessage());
+			if (cons != null) {
+				cons.close();
+			}
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (InterruptedException ex) {
+			System.err.println("Interrupted while waiting for messages, exiting.");
+			Thread.currentThread().interrupt();
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
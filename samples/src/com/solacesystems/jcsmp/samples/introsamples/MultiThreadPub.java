@@ -0,0 +1,249 @@
+/**
+ * MultiThreadPub.java
+ *
+ * This sample shows how many application threads can publish through one
+ * session without contending on the producer.
+ *
+ * When many threads call XMLMessageProducer#send() concurrently, they
+ * serialize on the session's network write, and throughput stops
+ * increasing after a few threads. In this sample, publishing threads never
+ * call the producer. Instead they:
+ *  - Offer {message, destination} entries to a lock-free MpscRing.
+ *  - Back off briefly and retry when the ring is full. The ring's
+ *    capacity bounds the memory used by queued messages.
+ *
+ * A single writer thread drains the ring in batches and publishes each
+ * batch with XMLMessageProducer#sendMultiple(). As only the writer thread
+ * uses the producer, the session is created with PUB_MULTI_THREAD
+ * disabled.
+ *
+ * With -q, publishing threads also number their messages with
+ * XMLMessage#setSequenceNumber(). Numbers come from a
+ * BlockSequenceAllocator, which lets each thread reserve blocks of
+ * numbers, so that threads do not contend on a shared counter for every
+ * message. Each thread's messages are numbered in increasing order.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPProperties;
+import com.solacesystems.jcsmp.JCSMPSendMultipleEntry;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.BlockSequenceAllocator;
+import com.solacesystems.jcsmp.samples.introsamples.common.MpscRing;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class MultiThreadPub extends SampleApp {
+	// The maximum number of entries accepted by a single sendMultiple() call.
+	static final int MAX_BATCH_SIZE = 50;
+
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 100000;
+	int threads = 4;
+	int ringSize = 4096;
+	int seqBlockSize = 0;
+	BlockSequenceAllocator seqAllocator = null;
+
+	// Set when all publishing threads are done.
+	volatile boolean publishersDone = false;
+	// Number of times a publishing thread found the ring full.
+	final AtomicLong ringFull = new AtomicLong();
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strThreads = conf.getArgBag().get("-p");
+			if (strThreads != null)
+				threads = Integer.valueOf(strThreads);
+			String strRing = conf.getArgBag().get("-r");
+			if (strRing != null)
+				ringSize = Integer.valueOf(strRing);
+			String strSeqBlock = conf.getArgBag().get("-q");
+			if (strSeqBlock != null)
+				seqBlockSize = Integer.valueOf(strSeqBlock);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || threads < 1 || ringSize < 1 || seqBlockSize < 0)
+			printUsage(parser.isSecure());
+		if (seqBlockSize > 0)
+			seqAllocator = new BlockSequenceAllocator(1, seqBlockSize);
+
+		// Only the writer thread uses the producer.
+		Map<String, Object> extra = new HashMap<String, Object>();
+		extra.put(JCSMPProperties.PUB_MULTI_THREAD, Boolean.FALSE);
+		// The allocated sequence numbers must not be replaced.
+		extra.put(JCSMPProperties.GENERATE_SEQUENCE_NUMBERS, Boolean.FALSE);
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), extra);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-t DELIVERY_MODE]\t Delivery mode (direct, persistent, non-persistent), default: direct\n";
+		strusage += "\t[-n number]\t Number of messages to publish per thread, default: 100000\n";
+		strusage += "\t[-p number]\t Number of publishing threads, default: 4\n";
+		strusage += "\t[-r number]\t Ring capacity, default: 4096\n";
+		strusage += "\t[-q number]\t Sequence number block size, 0 to not number messages, default: 0\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * A publishing thread: creates messages and offers them to the ring.
+	 */
+	class Publisher implements Runnable {
+		private final MpscRing<JCSMPSendMultipleEntry> ring;
+		private final Topic topic;
+
+		Publisher(MpscRing<JCSMPSendMultipleEntry> ring, Topic topic) {
+			this.ring = ring;
+			this.topic = topic;
+		}
+
+		public void run() {
+			final byte[] payload = SampleUtils.attachmentText.getBytes();
+			for (int i = 0; i < count; i++) {
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.writeAttachment(payload);
+				msg.setDeliveryMode(conf.getDeliveryMode());
+				if (seqAllocator != null)
+					msg.setSequenceNumber(seqAllocator.next());
+				JCSMPSendMultipleEntry entry = JCSMPFactory.onlyInstance().createSendMultipleEntry(msg, topic);
+
+				// Backpressure: wait for the writer to make room.
+				while (!ring.offer(entry)) {
+					ringFull.incrementAndGet();
+					LockSupport.parkNanos(1000);
+				}
+			}
+		}
+	}
+
+	/*
+	 * The writer: the only thread that publishes. Drains the ring in
+	 * batches until all publishers are done and the ring is empty.
+	 */
+	long drain(MpscRing<JCSMPSendMultipleEntry> ring) throws JCSMPException {
+		final JCSMPSendMultipleEntry[] batch = new JCSMPSendMultipleEntry[MAX_BATCH_SIZE];
+		long sent = 0;
+		while (true) {
+			// Read the flag before draining, so entries offered before it
+			// was set are not missed.
+			boolean done = publishersDone;
+			int n = ring.drainTo(batch, MAX_BATCH_SIZE);
+			if (n == 0) {
+				if (done)
+					break;
+				LockSupport.parkNanos(1000);
+				continue;
+			}
+			int written = 0;
+			while (written < n) {
+				written += prod.sendMultiple(batch, written, n - written, 0);
+			}
+			for (int i = 0; i < n; i++) {
+				batch[i] = null;
+			}
+			sent += n;
+		}
+		return sent;
+	}
+
+	public MultiThreadPub() {
+	}
+
+	public static void main(String[] args) {
+		MultiThreadPub app = new MultiThreadPub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance. sendMultiple() requires a streaming producer.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			final MpscRing<JCSMPSendMultipleEntry> ring = new MpscRing<JCSMPSendMultipleEntry>(ringSize);
+
+			long start = System.nanoTime();
+			final Thread[] publishers = new Thread[threads];
+			for (int i = 0; i < threads; i++) {
+				publishers[i] = new Thread(new Publisher(ring, topic), "Publisher-" + i);
+				publishers[i].start();
+			}
+			Thread joiner = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (Thread t : publishers) {
+							t.join();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					// Also set when interrupted, so that the writer stops.
+					publishersDone = true;
+				}
+			});
+			joiner.start();
+
+			// The application thread acts as the writer.
+			long sent = drain(ring);
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			System.out.printf("Sent %d messages from %d threads (%d ms, %d msgs/sec), ring full %d times.\n",
+				sent, threads, elapsedMs, (sent * 1000L) / elapsedMs, ringFull.get());
+			if (seqAllocator != null)
+				System.out.printf("Sequence numbers reserved in %d blocks of %d.\n", seqAllocator.getReservedBlocks(),
+					seqBlockSize);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * PublishTemplatePub.java
+ *
+ * This sample shows how to publish Direct messages to a set of recurring
+ * destinations using cached "publish templates".
+ *
+ * Applications that publish to the same few thousand topics over and
+ * over commonly create a new Topic and a new message for every send, and
+ * set the same header fields each time. This sample instead keeps one
+ * template per {destination, flags} pair. A template holds:
+ *  - The Topic, created once from its name.
+ *  - A session-independent message with the fixed header fields
+ *    (delivery mode, eliding and DMQ eligibility...) already set.
+ *
+ * Templates are looked up by destination in a map per combination of
+ * flags, so a lookup allocates nothing; the sample goes further and
+ * resolves its templates once, before the send loop. For each send, only
+ * the per-message fields are patched: the attachment, the sequence number
+ * and the sender timestamp. The sequence number and sender timestamp are
+ * set explicitly because the API does not overwrite existing values when
+ * a message is sent again.
+ *
+ * Templates rely on message reuse, which is only valid for Direct
+ * messages: Guaranteed messages are retained by the API until they are
+ * acknowledged.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class PublishTemplatePub extends SampleApp {
+	// Template flags
+	static final int FLAG_ELIDING_ELIGIBLE = 0x1;
+	static final int FLAG_DMQ_ELIGIBLE = 0x2;
+	static final int ALL_FLAGS = FLAG_ELIDING_ELIGIBLE | FLAG_DMQ_ELIGIBLE;
+
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	int topicCount = 10;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strTopics = conf.getArgBag().get("-k");
+			if (strTopics != null)
+				topicCount = Integer.valueOf(strTopics);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || topicCount < 1)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-k number]\t Number of topics to publish to, default: 10\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	/*
+	 * A publish template: the destination and a message whose fixed header
+	 * fields are set once.
+	 */
+	static final class PublishTemplate {
+		final Topic topic;
+		final BytesXMLMessage msg;
+
+		PublishTemplate(String destination, int flags) {
+			topic = JCSMPFactory.onlyInstance().createTopic(destination);
+			msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.setElidingEligible((flags & FLAG_ELIDING_ELIGIBLE) != 0);
+			msg.setDMQEligible((flags & FLAG_DMQ_ELIGIBLE) != 0);
+		}
+
+		/*
+		 * Patches the per-message fields and returns the message, ready to
+		 * be sent to this template's topic.
+		 */
+		BytesXMLMessage prepare(byte[] payload, long seqNum, long timestamp) {
+			msg.writeAttachment(payload);
+			msg.setSequenceNumber(seqNum);
+			msg.setSenderTimestamp(timestamp);
+			return msg;
+		}
+	}
+
+	/*
+	 * Cache of publish templates, with one map per combination of flags so
+	 * that a lookup allocates no key. Templates are created on first use.
+	 */
+	static final class PublishTemplateCache {
+		private final List<Map<String, PublishTemplate>> templates = new ArrayList<Map<String, PublishTemplate>>();
+
+		PublishTemplateCache() {
+			for (int flags = 0; flags <= ALL_FLAGS; flags++) {
+				templates.add(new HashMap<String, PublishTemplate>());
+			}
+		}
+
+		PublishTemplate get(String destination, int flags) {
+			if ((flags & ~ALL_FLAGS) != 0)
+				throw new IllegalArgumentException("Invalid template flags: " + flags);
+			Map<String, PublishTemplate> byDestination = templates.get(flags);
+			PublishTemplate template = byDestination.get(destination);
+			if (template == null) {
+				template = new PublishTemplate(destination, flags);
+				byDestination.put(destination, template);
+			}
+			return template;
+		}
+
+		int size() {
+			int size = 0;
+			for (Map<String, PublishTemplate> byDestination : templates) {
+				size += byDestination.size();
+			}
+			return size;
+		}
+	}
+
+	public PublishTemplatePub() {
+	}
+
+	public static void main(String[] args) {
+		PublishTemplatePub app = new PublishTemplatePub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final String[] topicNames = new String[topicCount];
+			for (int i = 0; i < topicCount; i++) {
+				topicNames[i] = SampleUtils.SAMPLE_TOPIC + "/" + i;
+			}
+			final byte[] payload = SampleUtils.attachmentText.getBytes();
+			final PublishTemplateCache cache = new PublishTemplateCache();
+
+			// Resolve the templates once; the send loop then only indexes
+			// into the array.
+			final PublishTemplate[] resolved = new PublishTemplate[topicCount];
+			for (int i = 0; i < topicCount; i++) {
+				resolved[i] = cache.get(topicNames[i], FLAG_ELIDING_ELIGIBLE);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				PublishTemplate template = resolved[i % topicCount];
+				prod.send(template.prepare(payload, i + 1, System.currentTimeMillis()), template.topic);
+			}
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			System.out.printf("Sent %d messages to %d topics using %d templates (%d ms).\n",
+				count, topicCount, cache.size(), elapsedMs);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+}
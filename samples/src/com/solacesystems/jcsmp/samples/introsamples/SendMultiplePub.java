@@ -0,0 +1,176 @@
+/**
+ * SendMultiplePub.java
+ *
+ * This sample shows how to publish messages in batches using
+ * XMLMessageProducer#sendMultiple(JCSMPSendMultipleEntry[], int, int, int).
+ *
+ * When publishing many small messages, the cost of writing each message to
+ * the network individually dominates. sendMultiple() hands a whole batch
+ * of {message, destination} tuples to the API at once, allowing the API to
+ * encode the batch and write it to the network in as few writes as
+ * possible.
+ *
+ * To get the most out of batching, this sample:
+ *  - Allocates the JCSMPSendMultipleEntry array once and reuses it for
+ *    every batch.
+ *  - For Direct messages, allocates one session-independent message per
+ *    array slot and reuses it for every batch. Guaranteed messages are
+ *    retained by the API until acknowledged, so a new message is
+ *    allocated for every send in that case.
+ *  - Loops on the value returned by sendMultiple(), as an implementation
+ *    may write fewer messages than requested.
+ *
+ * A single sendMultiple() call accepts at most 50 entries, so larger
+ * batch sizes are rejected.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPSendMultipleEntry;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+import com.solacesystems.jcsmp.samples.introsamples.common.ArgParser;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleApp;
+import com.solacesystems.jcsmp.samples.introsamples.common.SampleUtils;
+import com.solacesystems.jcsmp.samples.introsamples.common.SessionConfiguration;
+
+public class SendMultiplePub extends SampleApp {
+	// The maximum number of entries accepted by a single sendMultiple() call.
+	static final int MAX_BATCH_SIZE = 50;
+
+	XMLMessageProducer prod = null;
+	SessionConfiguration conf = null;
+	int count = 1000;
+	int batchSize = MAX_BATCH_SIZE;
+
+	void createSession(String[] args) {
+		// Parse command-line arguments
+		ArgParser parser = new ArgParser();
+		if (parser.parse(args) == 0)
+			conf = parser.getConfig();
+		else
+			printUsage(parser.isSecure());
+
+		try {
+			String strCount = conf.getArgBag().get("-n");
+			if (strCount != null)
+				count = Integer.valueOf(strCount);
+			String strBatch = conf.getArgBag().get("-b");
+			if (strBatch != null)
+				batchSize = Integer.valueOf(strBatch);
+		} catch (NumberFormatException e) {
+			printUsage(parser.isSecure());
+		}
+		if (count < 1 || batchSize < 1 || batchSize > MAX_BATCH_SIZE)
+			printUsage(parser.isSecure());
+
+		session = SampleUtils.newSession(conf, new PrintingSessionEventHandler(), null);
+	}
+
+	void printUsage(boolean secure) {
+		String strusage = ArgParser.getCommonUsage(secure);
+		strusage += "This sample:\n";
+		strusage += "\t[-t DELIVERY_MODE]\t Delivery mode (direct, persistent, non-persistent), default: direct\n";
+		strusage += "\t[-n number]\t Number of messages to publish, default: 1000\n";
+		strusage += "\t[-b number]\t Messages per sendMultiple() call (1-" + MAX_BATCH_SIZE + "), default: "
+			+ MAX_BATCH_SIZE + "\n";
+		System.out.println(strusage);
+		finish(1);
+	}
+
+	public SendMultiplePub() {
+	}
+
+	public static void main(String[] args) {
+		SendMultiplePub app = new SendMultiplePub();
+		app.run(args);
+	}
+
+	void run(String[] args) {
+		createSession(args);
+
+		try {
+			// Acquire a message producer and open the data channel to
+			// the appliance. sendMultiple() requires a streaming producer.
+			System.out.println("About to connect to appliance.");
+			session.connect();
+			prod = session.getMessageProducer(new PrintingPubCallback());
+			printRouterInfo();
+			System.out.println("Connected!");
+
+			final Topic topic = JCSMPFactory.onlyInstance().createTopic(SampleUtils.SAMPLE_TOPIC);
+			final DeliveryMode mode = conf.getDeliveryMode();
+			final boolean reuseMessages = (mode == DeliveryMode.DIRECT);
+			final byte[] payload = SampleUtils.attachmentText.getBytes();
+
+			// Allocate the batch once; only the messages are refreshed
+			// between batches.
+			final JCSMPSendMultipleEntry[] entries = new JCSMPSendMultipleEntry[batchSize];
+			for (int i = 0; i < batchSize; i++) {
+				entries[i] = JCSMPFactory.onlyInstance().createSendMultipleEntry(
+					newMessage(mode, payload), topic);
+			}
+
+			long start = System.nanoTime();
+			int sent = 0;
+			while (sent < count) {
+				final int len = Math.min(batchSize, count - sent);
+				if (!reuseMessages && sent > 0) {
+					for (int i = 0; i < len; i++) {
+						entries[i].setMessage(newMessage(mode, payload));
+					}
+				}
+
+				// sendMultiple() may write fewer messages than requested.
+				int written = 0;
+				while (written < len) {
+					written += prod.sendMultiple(entries, written, len - written, 0);
+				}
+				sent += len;
+			}
+			long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			System.out.printf("Sent %d %s messages in batches of %d (%d ms, %d msgs/sec).\n",
+				sent, mode, batchSize, elapsedMs, (sent * 1000L) / elapsedMs);
+			finish(0);
+		} catch (JCSMPTransportException ex) {
+			System.err.println("Encountered a JCSMPTransportException, closing producer... " + ex.getMessage());
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (JCSMPException ex) {
+			System.err.println("Encountered a JCSMPException, closing producer... " + ex.getMessage());
+			// Possible causes:
+			// - Authentication error: invalid username/password
+			// - Provisioning error: publisher not entitled is a common error in
+			// this category
+			// - Invalid or unsupported properties specified
+			if (prod != null) {
+				prod.close();
+			}
+			finish(1);
+		} catch (Exception ex) {
+			System.err.println("Encountered an Exception... " + ex.getMessage());
+			finish(1);
+		}
+	}
+
+	/*
+	 * sendMultiple() only accepts session-independent messages, all with the
+	 * same delivery mode.
+	 */
+	static BytesXMLMessage newMessage(DeliveryMode mode, byte[] payload) {
+		BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+		msg.writeAttachment(payload);
+		msg.setDeliveryMode(mode);
+		return msg;
+	}
+}
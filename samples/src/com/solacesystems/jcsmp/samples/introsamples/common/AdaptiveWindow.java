@@ -0,0 +1,175 @@
+/**
+ * AdaptiveWindow.java
+ *
+ * Publish window sizing driven by measured acknowledgement round-trip
+ * time.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+/**
+ * Computes a Guaranteed publish window between configured bounds from the
+ * round-trip times of acknowledgements, in the manner of delay-based TCP
+ * congestion control:
+ *  - The lowest RTT seen recently is taken as the RTT of an idle path.
+ *  - While the smoothed RTT stays close to it, the window grows by about
+ *    one message per window of acknowledgements, so that high-latency
+ *    links fill up.
+ *  - Once the smoothed RTT rises well above it, messages are queueing
+ *    rather than in flight, and the window shrinks by one eighth, at
+ *    most once per RTT. This keeps the window, and the memory held by
+ *    unacknowledged messages, small on low-latency links.
+ *  - A rejected or timed out message halves the window.
+ *
+ * The base RTT is re-sampled periodically so the window follows changes
+ * in the network path.
+ *
+ * Instances are thread-safe.
+ */
+public class AdaptiveWindow {
+	// Smoothed RTT above base * GROW_LIMIT stops growth, above
+	// base * SHRINK_LIMIT causes a decrease.
+	private static final double GROW_LIMIT = 1.5;
+	private static final double SHRINK_LIMIT = 2.0;
+	private static final long BASE_RTT_PERIOD_NANOS = 10000000000L;
+	private static final long RATE_PERIOD_NANOS = 1000000000L;
+
+	private final int minWindow;
+	private final int maxWindow;
+	private double window;
+
+	private boolean started = false;
+	private long baseRttNanos = Long.MAX_VALUE;
+	private long periodMinRttNanos = Long.MAX_VALUE;
+	private long periodStartNanos;
+	private long smoothedRttNanos = 0;
+	private long lastDecreaseNanos;
+
+	private long rateStartNanos;
+	private long rateCount = 0;
+	private long ackRate = 0;
+
+	/**
+	 * @param minWindow the smallest window, at least 1
+	 * @param maxWindow the largest window; should not exceed the session's
+	 *            PUB_ACK_WINDOW_SIZE
+	 * @param initialWindow the starting window, within the bounds
+	 */
+	public AdaptiveWindow(int minWindow, int maxWindow, int initialWindow) {
+		if (minWindow < 1 || maxWindow < minWindow || initialWindow < minWindow || initialWindow > maxWindow)
+			throw new IllegalArgumentException(String.format("Invalid window bounds: min=%d, max=%d, initial=%d",
+				minWindow, maxWindow, initialWindow));
+		this.minWindow = minWindow;
+		this.maxWindow = maxWindow;
+		this.window = initialWindow;
+	}
+
+	/**
+	 * Records an acknowledgement received rttNanos after its message was
+	 * sent.
+	 *
+	 * @return the new window
+	 */
+	public synchronized int onAck(long rttNanos, long nowNanos) {
+		updateRate(nowNanos);
+
+		// Base RTT: the minimum of the previous period, or of the current
+		// one if lower.
+		if (rttNanos < periodMinRttNanos)
+			periodMinRttNanos = rttNanos;
+		if (rttNanos < baseRttNanos)
+			baseRttNanos = rttNanos;
+		if (nowNanos - periodStartNanos >= BASE_RTT_PERIOD_NANOS) {
+			baseRttNanos = periodMinRttNanos;
+			periodMinRttNanos = Long.MAX_VALUE;
+			periodStartNanos = nowNanos;
+		}
+
+		// Smoothed RTT, with a gain of 1/8.
+		if (smoothedRttNanos == 0)
+			smoothedRttNanos = rttNanos;
+		else
+			smoothedRttNanos += (rttNanos - smoothedRttNanos) / 8;
+
+		if (smoothedRttNanos > baseRttNanos * SHRINK_LIMIT) {
+			if (nowNanos - lastDecreaseNanos >= smoothedRttNanos) {
+				window = Math.max(minWindow, window * 7 / 8);
+				lastDecreaseNanos = nowNanos;
+			}
+		} else if (smoothedRttNanos <= baseRttNanos * GROW_LIMIT) {
+			window = Math.min(maxWindow, window + 1.0 / window);
+		}
+		return getWindow();
+	}
+
+	/**
+	 * Records a rejected or timed out message.
+	 *
+	 * @return the new window
+	 */
+	public synchronized int onFailure(long nowNanos) {
+		updateRate(nowNanos);
+		window = Math.max(minWindow, window / 2);
+		lastDecreaseNanos = nowNanos;
+		return getWindow();
+	}
+
+	private void updateRate(long nowNanos) {
+		if (!started) {
+			periodStartNanos = nowNanos;
+			lastDecreaseNanos = nowNanos;
+			rateStartNanos = nowNanos;
+			started = true;
+		}
+		rateCount++;
+		long elapsed = nowNanos - rateStartNanos;
+		if (elapsed >= RATE_PERIOD_NANOS) {
+			ackRate = rateCount * RATE_PERIOD_NANOS / elapsed;
+			rateCount = 0;
+			rateStartNanos = nowNanos;
+		}
+	}
+
+	public synchronized int getWindow() {
+		return (int) window;
+	}
+
+	public int getMinWindow() {
+		return minWindow;
+	}
+
+	public int getMaxWindow() {
+		return maxWindow;
+	}
+
+	/**
+	 * The smoothed acknowledgement RTT in microseconds, or 0 before the first
+	 * acknowledgement.
+	 */
+	public synchronized long getSmoothedRttMicros() {
+		return smoothedRttNanos / 1000;
+	}
+
+	/**
+	 * The base (idle path) acknowledgement RTT in microseconds, or 0 before
+	 * the first acknowledgement.
+	 */
+	public synchronized long getBaseRttMicros() {
+		return (baseRttNanos == Long.MAX_VALUE) ? 0 : baseRttNanos / 1000;
+	}
+
+	/**
+	 * Messages completed per second, measured over the last full second.
+	 */
+	public synchronized long getAckRate() {
+		return ackRate;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("window=%d [%d-%d], srtt=%dus, base rtt=%dus, ack rate=%d/s", getWindow(),
+			minWindow, maxWindow, getSmoothedRttMicros(), getBaseRttMicros(), ackRate);
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Attachments.java
+ *
+ * Access to message attachments without copying them.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.nio.ByteBuffer;
+
+import com.solacesystems.jcsmp.XMLMessage;
+
+/**
+ * Helpers for reading attachments in place. XMLMessage#getAttachmentByteBuffer()
+ * returns a view of the array the message holds its attachment in, while
+ * XMLMessage#readAttachmentBytes() copies the attachment into a new array.
+ */
+final class Attachments {
+
+	private Attachments() {
+	}
+
+	/**
+	 * @return a view of the message's attachment, empty if it has none,
+	 *         backed by an accessible array
+	 */
+	static ByteBuffer view(XMLMessage msg) {
+		ByteBuffer buffer = msg.getAttachmentByteBuffer();
+		if (buffer == null)
+			return ByteBuffer.allocate(0);
+		if (!buffer.hasArray())
+			return ByteBuffer.wrap(toArray(buffer));
+		return buffer;
+	}
+
+	/**
+	 * @return a buffer's remaining bytes as an array, which is the buffer's
+	 *         own array if it is exactly the remaining bytes
+	 */
+	static byte[] toArray(ByteBuffer buffer) {
+		if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+			&& buffer.remaining() == buffer.array().length)
+			return buffer.array();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return bytes;
+	}
+}
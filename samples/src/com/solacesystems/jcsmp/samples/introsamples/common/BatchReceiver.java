@@ -0,0 +1,146 @@
+/**
+ * BatchReceiver.java
+ *
+ * Delivery of received messages to the application in batches.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.Consumer;
+import com.solacesystems.jcsmp.JCSMPException;
+
+/**
+ * Receives messages from a synchronous consumer, either an
+ * XMLMessageConsumer or a FlowReceiver created without a listener, and
+ * passes them to a {@link BatchListener} in batches, so that the
+ * application can process them in bulk, for instance with a single
+ * database insert.
+ *
+ * A dispatch thread blocks until a message is available, then takes every
+ * message already received, up to the maximum batch size, without waiting
+ * for more. A batch is therefore delivered as soon as its first message
+ * arrives, and batches grow only when messages arrive faster than the
+ * listener processes them.
+ *
+ * With client acknowledgement, the listener acknowledges the messages of
+ * a batch once it has processed them.
+ */
+public class BatchReceiver {
+	// How long the dispatch thread waits for a message before checking
+	// whether it is closed.
+	private static final int POLL_TIMEOUT_MS = 100;
+
+	/**
+	 * Receives the batches of a BatchReceiver, on its dispatch thread.
+	 */
+	public interface BatchListener {
+		/**
+		 * Called with the next batch of messages, in the order received.
+		 * The list is only valid during the call.
+		 */
+		void onBatch(List<BytesXMLMessage> batch);
+
+		/**
+		 * Called if receiving fails. The dispatch thread then stops.
+		 */
+		void onException(JCSMPException exception);
+	}
+
+	private final Consumer consumer;
+	private final int maxBatchSize;
+	private final BatchListener listener;
+	private final Thread dispatcher;
+	private volatile boolean closed = false;
+	private volatile long batchCount = 0;
+	private volatile long messageCount = 0;
+	private volatile int largestBatch = 0;
+
+	/**
+	 * @param consumer a consumer created without a message listener
+	 * @param maxBatchSize the maximum number of messages in a batch
+	 * @param listener the listener
+	 */
+	public BatchReceiver(Consumer consumer, int maxBatchSize, BatchListener listener) {
+		if (maxBatchSize < 1)
+			throw new IllegalArgumentException("Invalid maximum batch size: " + maxBatchSize);
+		this.consumer = consumer;
+		this.maxBatchSize = maxBatchSize;
+		this.listener = listener;
+		this.dispatcher = new Thread(new Runnable() {
+			public void run() {
+				dispatch();
+			}
+		}, "BatchReceiver");
+	}
+
+	/**
+	 * Starts the consumer and the dispatch thread.
+	 */
+	public void start() throws JCSMPException {
+		consumer.start();
+		dispatcher.start();
+	}
+
+	/**
+	 * Stops the dispatch thread once it has delivered the current batch.
+	 * Messages received but not yet taken remain in the consumer.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		dispatcher.join();
+	}
+
+	/**
+	 * The number of batches delivered.
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * The number of messages delivered.
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * The number of messages in the largest batch delivered.
+	 */
+	public int getLargestBatch() {
+		return largestBatch;
+	}
+
+	private void dispatch() {
+		final List<BytesXMLMessage> batch = new ArrayList<BytesXMLMessage>(maxBatchSize);
+		final List<BytesXMLMessage> view = Collections.unmodifiableList(batch);
+		try {
+			while (!closed) {
+				BytesXMLMessage msg = consumer.receive(POLL_TIMEOUT_MS);
+				if (msg == null)
+					continue;
+				// Take what has already arrived, without waiting.
+				do {
+					batch.add(msg);
+				} while (batch.size() < maxBatchSize && (msg = consumer.receiveNoWait()) != null);
+
+				listener.onBatch(view);
+				batchCount++;
+				messageCount += batch.size();
+				if (batch.size() > largestBatch)
+					largestBatch = batch.size();
+				batch.clear();
+			}
+		} catch (JCSMPException ex) {
+			if (!closed)
+				listener.onException(ex);
+		}
+	}
+}
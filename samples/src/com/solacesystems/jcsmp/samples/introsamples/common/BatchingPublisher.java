@@ -0,0 +1,225 @@
+/**
+ * BatchingPublisher.java
+ *
+ * Application-level packing of small Direct messages to the same topic
+ * into a single envelope message.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.SDTStream;
+import com.solacesystems.jcsmp.StreamMessage;
+import com.solacesystems.jcsmp.Topic;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Packs the payloads of small Direct messages published to the same topic
+ * into one envelope message, so that the SMF header and the appliance's
+ * routing decision are paid once per envelope instead of once per message.
+ *
+ * An envelope is a {@link StreamMessage} whose application message type is
+ * {@link #BATCH_MESSAGE_TYPE} and whose stream holds one byte array per
+ * payload, in publish order. Subscribers split envelopes back into
+ * individual messages with an {@link UnbatchingListener}. A batch holding a
+ * single payload is published as a plain {@link BytesXMLMessage}.
+ *
+ * A topic's batch is published when the first of these happens:
+ *  - The linger time has elapsed since its first payload was queued.
+ *  - It holds the configured number of payloads.
+ *  - It holds the configured number of payload bytes.
+ *
+ * Messages to different topics are not ordered with respect to each other.
+ */
+public class BatchingPublisher {
+	/** Application message type identifying envelopes. */
+	public static final String BATCH_MESSAGE_TYPE = "jcsmp-sample-batch";
+
+	/*
+	 * Payloads queued for one topic. The first payload is only written to
+	 * a stream once a second one arrives, so that a single payload is not
+	 * framed for nothing.
+	 */
+	private static final class Batch {
+		final Topic topic;
+		final long deadline;
+		byte[] first;
+		SDTStream stream;
+		int count = 0;
+		int bytes = 0;
+
+		Batch(Topic topic, long deadline) {
+			this.topic = topic;
+			this.deadline = deadline;
+		}
+	}
+
+	private final XMLMessageProducer prod;
+	private final int maxCount;
+	private final int maxBytes;
+	private final long lingerNanos;
+	private final PublisherThread flusher;
+
+	// Pending batches by topic name. Batches are removed when published, so
+	// insertion order is also deadline order.
+	private final Map<String, Batch> batches = new LinkedHashMap<String, Batch>();
+
+	private long envelopeCount = 0;
+	private long msgCount = 0;
+
+	/**
+	 * @param prod the producer used to publish envelopes
+	 * @param maxCount payloads per envelope
+	 * @param maxBytes payload bytes that trigger an immediate publish
+	 * @param lingerMicros how long a payload may wait for others
+	 */
+	public BatchingPublisher(XMLMessageProducer prod, int maxCount, int maxBytes, long lingerMicros) {
+		if (maxCount < 1 || maxBytes < 1 || lingerMicros < 0)
+			throw new IllegalArgumentException("Invalid batching settings");
+		this.prod = prod;
+		this.maxCount = maxCount;
+		this.maxBytes = maxBytes;
+		this.lingerNanos = lingerMicros * 1000;
+		this.flusher = new PublisherThread(this, "BatchingPublisher", new Runnable() {
+			public void run() {
+				runFlusher();
+			}
+		});
+		this.flusher.start();
+	}
+
+	/**
+	 * Queues a payload for a topic, publishing the topic's batch if it is
+	 * full. The payload must not be modified afterwards.
+	 *
+	 * @throws JCSMPException if publishing failed, including an earlier
+	 *             linger-triggered publish
+	 */
+	public synchronized void send(byte[] payload, Topic topic) throws JCSMPException {
+		flusher.checkOpen();
+
+		Batch batch = batches.get(topic.getName());
+		if (batch == null) {
+			batch = new Batch(topic, System.nanoTime() + lingerNanos);
+			batches.put(topic.getName(), batch);
+			notifyAll();
+		}
+		if (batch.count == 0) {
+			batch.first = payload;
+		} else {
+			if (batch.stream == null) {
+				batch.stream = JCSMPFactory.onlyInstance().createStream();
+				batch.stream.writeBytes(batch.first);
+			}
+			batch.stream.writeBytes(payload);
+		}
+		batch.count++;
+		batch.bytes += payload.length;
+		if (batch.count >= maxCount || batch.bytes >= maxBytes || lingerNanos == 0) {
+			batches.remove(topic.getName());
+			publish(batch);
+		}
+	}
+
+	/**
+	 * Publishes all queued batches now.
+	 */
+	public synchronized void flush() throws JCSMPException {
+		Iterator<Batch> it = batches.values().iterator();
+		while (it.hasNext()) {
+			Batch batch = it.next();
+			it.remove();
+			publish(batch);
+		}
+	}
+
+	/**
+	 * Publishes queued batches and stops the linger timer.
+	 *
+	 * @throws JCSMPException if publishing failed
+	 */
+	public void close() throws JCSMPException, InterruptedException {
+		if (!flusher.close())
+			return;
+		synchronized (this) {
+			flush();
+			flusher.throwError();
+		}
+	}
+
+	/**
+	 * The number of messages (envelopes or single payloads) published.
+	 */
+	public synchronized long getEnvelopeCount() {
+		return envelopeCount;
+	}
+
+	/**
+	 * The number of payloads published.
+	 */
+	public synchronized long getMessageCount() {
+		return msgCount;
+	}
+
+	private void publish(Batch batch) throws JCSMPException {
+		if (batch.count == 1) {
+			BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.writeAttachment(batch.first);
+			prod.send(msg, batch.topic);
+		} else {
+			StreamMessage msg = JCSMPFactory.onlyInstance().createMessage(StreamMessage.class);
+			msg.setDeliveryMode(DeliveryMode.DIRECT);
+			msg.setApplicationMessageType(BATCH_MESSAGE_TYPE);
+			msg.setStream(batch.stream);
+			prod.send(msg, batch.topic);
+		}
+		envelopeCount++;
+		msgCount += batch.count;
+	}
+
+	/*
+	 * Publishes batches whose linger time has elapsed, oldest first.
+	 */
+	private void runFlusher() {
+		while (true) {
+			long waitNanos;
+			synchronized (this) {
+				if (flusher.isClosed())
+					return;
+				if (batches.isEmpty()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+					continue;
+				}
+				Iterator<Batch> it = batches.values().iterator();
+				Batch oldest = it.next();
+				waitNanos = oldest.deadline - System.nanoTime();
+				if (waitNanos <= 0) {
+					it.remove();
+					try {
+						publish(oldest);
+					} catch (JCSMPException ex) {
+						// Reported to the next send() or close() call.
+						flusher.setError(ex);
+					}
+					continue;
+				}
+			}
+			LockSupport.parkNanos(this, waitNanos);
+		}
+	}
+}
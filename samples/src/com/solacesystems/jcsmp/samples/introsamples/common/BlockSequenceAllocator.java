@@ -0,0 +1,83 @@
+/**
+ * BlockSequenceAllocator.java
+ *
+ * Allocation of unique sequence numbers to many threads, without
+ * contention.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique sequence numbers, for XMLMessage#setSequenceNumber(),
+ * to any number of threads. Each thread reserves a block of consecutive
+ * numbers from a shared counter, then allocates from its block with no
+ * synchronization at all. The shared counter is only updated once per
+ * block, so threads do not contend on it.
+ *
+ * Numbers allocated by one thread are increasing, which is the ordering a
+ * receiver can rely on when it tracks sequence numbers per publishing
+ * thread. Numbers allocated by different threads interleave in no
+ * particular order. Numbers left in a block when its thread stops are
+ * never allocated, so the numbers seen by receivers have gaps.
+ *
+ * The session's own sequence numbering (GENERATE_SEQUENCE_NUMBERS) must be
+ * disabled, as it would replace the allocated numbers.
+ */
+public class BlockSequenceAllocator {
+
+	/*
+	 * A thread's reserved block: numbers from next (inclusive) to end
+	 * (exclusive) are still free.
+	 */
+	private static final class Block {
+		long next;
+		long end;
+	}
+
+	private final AtomicLong nextBlock;
+	private final long first;
+	private final int blockSize;
+	private final ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
+		protected Block initialValue() {
+			return new Block();
+		}
+	};
+
+	/**
+	 * @param first the first number to allocate
+	 * @param blockSize the number of numbers a thread reserves at a time
+	 */
+	public BlockSequenceAllocator(long first, int blockSize) {
+		if (first < 0)
+			throw new IllegalArgumentException("Invalid first number: " + first);
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Invalid block size: " + blockSize);
+		this.first = first;
+		this.blockSize = blockSize;
+		this.nextBlock = new AtomicLong(first);
+	}
+
+	/**
+	 * @return a sequence number not allocated before, greater than any
+	 *         number previously allocated by the calling thread
+	 */
+	public long next() {
+		Block block = blocks.get();
+		if (block.next == block.end) {
+			block.next = nextBlock.getAndAdd(blockSize);
+			block.end = block.next + blockSize;
+		}
+		return block.next++;
+	}
+
+	/**
+	 * The number of blocks reserved so far.
+	 */
+	public long getReservedBlocks() {
+		return (nextBlock.get() - first) / blockSize;
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * ChannelWaiter.java
+ *
+ * Waiting on a channel that made no progress.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Waits on channel reads and writes that transfer no bytes. A channel in
+ * non-blocking mode does so when it is not ready; retrying straight away
+ * would keep a core busy until it is.
+ *
+ * A waiter opens a single selector, on its first wait on a selectable
+ * channel, and keeps it until {@link #close()}: channels stay registered
+ * with it between waits. Instances are not thread-safe.
+ */
+final class ChannelWaiter {
+	// Pause before retrying a channel that cannot be selected.
+	private static final long RETRY_MILLIS = 1;
+
+	private Selector selector = null;
+
+	/**
+	 * Waits until a channel is likely to make progress after a read or write
+	 * that transferred no bytes. A selectable channel in non-blocking mode
+	 * is waited on with the waiter's selector until it is ready; any other
+	 * channel is retried after a short pause.
+	 *
+	 * @param op {@link SelectionKey#OP_READ} or {@link SelectionKey#OP_WRITE}
+	 * @throws InterruptedIOException if the thread is interrupted
+	 */
+	void awaitReady(Channel channel, int op) throws IOException {
+		if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+			SelectableChannel selectable = (SelectableChannel) channel;
+			if (selector == null)
+				selector = Selector.open();
+			SelectionKey key = selectable.keyFor(selector);
+			if (key != null && !key.isValid()) {
+				// Cancelled: flush it before registering the channel again.
+				selector.selectNow();
+				key = null;
+			}
+			if (key == null)
+				selectable.register(selector, op);
+			else
+				key.interestOps(op);
+			selector.select();
+			selector.selectedKeys().clear();
+			if (Thread.currentThread().isInterrupted())
+				throw new InterruptedIOException("Interrupted while waiting for a channel");
+			return;
+		}
+		try {
+			Thread.sleep(RETRY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a channel");
+		}
+	}
+
+	/**
+	 * Deregisters a channel that was waited on, so that its owner can put
+	 * it back in blocking mode or register it with another selector. Closing
+	 * the channel also deregisters it.
+	 */
+	void release(Channel channel) throws IOException {
+		if (selector == null || !(channel instanceof SelectableChannel))
+			return;
+		SelectionKey key = ((SelectableChannel) channel).keyFor(selector);
+		if (key != null) {
+			key.cancel();
+			// The channel is only deregistered by the next selection.
+			selector.selectNow();
+		}
+	}
+
+	/**
+	 * Closes the selector, if it was opened.
+	 */
+	void close() throws IOException {
+		if (selector != null) {
+			selector.close();
+			selector = null;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+/**
+ * Clock.java
+ *
+ * A source of wall-clock time.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+/**
+ * A source of the current time, in milliseconds since the epoch, used for
+ * message timestamps and expiration. See {@link Clocks} for the available
+ * implementations. Implementations are thread-safe.
+ */
+public interface Clock {
+	/**
+	 * @return the current time in milliseconds since the epoch
+	 */
+	long currentTimeMillis();
+}
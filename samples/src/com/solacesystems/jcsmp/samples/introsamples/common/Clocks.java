@@ -0,0 +1,117 @@
+/**
+ * Clocks.java
+ *
+ * The available clocks.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+/**
+ * Provides the {@link Clock} implementations:
+ *  - {@link #SYSTEM} calls System#currentTimeMillis() every time.
+ *  - {@link #MONOTONIC} reads System#nanoTime() relative to a wall-clock
+ *    time taken once. Its time never goes backwards, and is not affected
+ *    by adjustments of the system clock after the class is loaded.
+ *  - {@link CachedClock} returns a time updated by a single ticker thread.
+ *    Reading it costs a volatile read, and it is accurate to the tick
+ *    interval; use it where many threads read the time for every message.
+ */
+public final class Clocks {
+
+	/** System#currentTimeMillis(). */
+	public static final Clock SYSTEM = new Clock() {
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+
+		public String toString() {
+			return "system";
+		}
+	};
+
+	/** Wall-clock time at class loading plus elapsed System#nanoTime(). */
+	public static final Clock MONOTONIC = new Clock() {
+		private final long baseMillis = System.currentTimeMillis();
+		private final long baseNanos = System.nanoTime();
+
+		public long currentTimeMillis() {
+			return baseMillis + (System.nanoTime() - baseNanos) / 1000000;
+		}
+
+		public String toString() {
+			return "monotonic";
+		}
+	};
+
+	/**
+	 * A clock updated by a daemon ticker thread. Call {@link #close()} to
+	 * stop the thread.
+	 */
+	public static final class CachedClock implements Clock, Runnable {
+		private final long tickMillis;
+		private final Thread ticker;
+		private volatile long now = System.currentTimeMillis();
+		private volatile boolean closed = false;
+
+		/**
+		 * Starts the ticker thread.
+		 *
+		 * @param tickMillis the interval between updates of the time
+		 */
+		public CachedClock(long tickMillis) {
+			if (tickMillis < 1)
+				throw new IllegalArgumentException("Invalid tick interval: " + tickMillis);
+			this.tickMillis = tickMillis;
+			this.ticker = new Thread(this, "CachedClock");
+			this.ticker.setDaemon(true);
+			this.ticker.start();
+		}
+
+		public long currentTimeMillis() {
+			return now;
+		}
+
+		public void run() {
+			while (!closed) {
+				try {
+					Thread.sleep(tickMillis);
+				} catch (InterruptedException e) {
+					// Only close() interrupts the ticker.
+					return;
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+
+		/**
+		 * Stops the ticker thread. The time is no longer updated.
+		 */
+		public void close() {
+			closed = true;
+			ticker.interrupt();
+		}
+
+		public String toString() {
+			return "cached(" + tickMillis + " ms)";
+		}
+	}
+
+	private Clocks() {
+	}
+
+	/**
+	 * @param name "system", "monotonic", or "cached"
+	 * @param tickMillis the tick interval of a cached clock
+	 */
+	public static Clock forName(String name, long tickMillis) {
+		if ("system".equalsIgnoreCase(name))
+			return SYSTEM;
+		if ("monotonic".equalsIgnoreCase(name))
+			return MONOTONIC;
+		if ("cached".equalsIgnoreCase(name))
+			return new CachedClock(tickMillis);
+		throw new IllegalArgumentException("Unknown clock: " + name);
+	}
+}
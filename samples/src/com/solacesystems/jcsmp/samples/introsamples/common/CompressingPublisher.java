@@ -0,0 +1,414 @@
+/**
+ * CompressingPublisher.java
+ *
+ * Payload compression on worker threads, with in-order publishing from a
+ * single writer thread.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.SDTException;
+import com.solacesystems.jcsmp.SDTMap;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Compresses message payloads on a pool of worker threads and publishes
+ * them, in the order in which they were submitted, from a single writer
+ * thread.
+ *
+ * Session compression (JCSMPChannelProperties.setCompressionLevel())
+ * compresses the whole SMF stream on the thread that writes to the socket,
+ * which limits a session to the throughput of one core. Compressing each
+ * payload independently lets several cores share the work, while the
+ * writer thread only sends. Do not combine both: compressed payloads do
+ * not compress further.
+ *
+ * Compressed messages carry the {@link #ENCODING_PROPERTY} and
+ * {@link #ORIGINAL_LENGTH_PROPERTY} user properties. Receivers restore the
+ * payload with {@link #decompress(BytesXMLMessage)}.
+ *
+ * Compression is done by a {@link CompressionBackend}, by default
+ * {@link CompressionBackends#JDK}. The format does not depend on the
+ * backend.
+ *
+ * Payloads that do not compress well, such as images or data that is
+ * already compressed, are published uncompressed, without the user
+ * properties: when the compressed size exceeds the configured ratio of
+ * the original size (see {@link #setMaxUsefulRatio(double)}), the original
+ * payload is sent instead. Each such payload also makes the publisher skip
+ * compression for the next payloads, starting with one and doubling up to
+ * {@value #MAX_SKIP_INTERVAL} while payloads keep failing to compress, so
+ * that a stream of incompressible data costs little CPU. Payloads shorter
+ * than {@value #MIN_COMPRESS_LENGTH} bytes are never compressed.
+ *
+ * Up to a fixed number of payloads can be waiting for compression or for
+ * the writer: when that many are in flight, send() blocks.
+ */
+public class CompressingPublisher {
+	/** User property naming the payload encoding. */
+	public static final String ENCODING_PROPERTY = "sample_encoding";
+	/** User property holding the uncompressed payload length. */
+	public static final String ORIGINAL_LENGTH_PROPERTY = "sample_original_length";
+	/** Value of {@link #ENCODING_PROPERTY} for zlib-format payloads. */
+	public static final String DEFLATE = "deflate";
+
+	/** Payloads shorter than this are sent uncompressed. */
+	public static final int MIN_COMPRESS_LENGTH = 64;
+	/** The most payloads skipped after a payload fails to compress. */
+	public static final int MAX_SKIP_INTERVAL = 64;
+
+	// Payloads in flight per worker.
+	private static final int QUEUE_DEPTH_PER_WORKER = 4;
+
+	/*
+	 * A payload in flight, in submission order.
+	 */
+	private static final class Pending {
+		// Null when the payload is sent uncompressed.
+		final Future<byte[]> compressed;
+		final byte[] payload;
+		final Destination dest;
+
+		Pending(Future<byte[]> compressed, byte[] payload, Destination dest) {
+			this.compressed = compressed;
+			this.payload = payload;
+			this.dest = dest;
+		}
+	}
+
+	// Queued by close() to stop the writer.
+	private static final Pending END = new Pending(null, null, null);
+
+	// Idle decompressors of decompress(), per backend. There are never
+	// more than the largest number of concurrent calls, and they are kept
+	// for the life of the application.
+	private static final ConcurrentMap<CompressionBackend, Queue<CompressionBackend.Decompressor>> DECOMPRESSORS =
+		new ConcurrentHashMap<CompressionBackend, Queue<CompressionBackend.Decompressor>>();
+
+	private final XMLMessageProducer prod;
+	private final DeliveryMode mode;
+	private final ExecutorService workers;
+	private final BlockingQueue<Pending> inOrder;
+	private final Thread writer;
+	private final ThreadLocal<CompressionBackend.Compressor> compressors;
+	// Every compressor created by the worker threads, ended by close().
+	private final Queue<CompressionBackend.Compressor> allCompressors =
+		new ConcurrentLinkedQueue<CompressionBackend.Compressor>();
+
+	private volatile boolean closed = false;
+	private volatile JCSMPException writeError = null;
+	private volatile double maxUsefulRatio = 0.9;
+
+	// Compression backoff, guarded by bypassLock.
+	private final Object bypassLock = new Object();
+	private int skipInterval = 0;
+	private int skipRemaining = 0;
+
+	// Updated by the writer thread only.
+	private volatile long sentCount = 0;
+	private volatile long bypassedCount = 0;
+	private volatile long originalBytes = 0;
+	private volatile long sentBytes = 0;
+	// Updated by the worker threads.
+	private final AtomicLong compressNanos = new AtomicLong();
+
+	/**
+	 * Creates a CompressingPublisher using the JDK backend.
+	 *
+	 * @param prod the producer, only used through this CompressingPublisher
+	 *            once it is created
+	 * @param mode the delivery mode of published messages
+	 * @param workerCount the number of compression threads
+	 * @param level the zlib compression level, 1 (fastest) to 9 (best)
+	 */
+	public CompressingPublisher(XMLMessageProducer prod, DeliveryMode mode, int workerCount, int level) {
+		this(prod, mode, workerCount, level, CompressionBackends.JDK);
+	}
+
+	/**
+	 * @param backend the compression implementation
+	 */
+	public CompressingPublisher(XMLMessageProducer prod, DeliveryMode mode, int workerCount, final int level,
+		final CompressionBackend backend) {
+		if (workerCount < 1)
+			throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+		// Fails early on an invalid level.
+		backend.newCompressor(level).end();
+		this.prod = prod;
+		this.mode = mode;
+		this.compressors = new ThreadLocal<CompressionBackend.Compressor>() {
+			protected CompressionBackend.Compressor initialValue() {
+				CompressionBackend.Compressor compressor = backend.newCompressor(level);
+				allCompressors.add(compressor);
+				return compressor;
+			}
+		};
+		this.workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "CompressingPublisher-worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.inOrder = new ArrayBlockingQueue<Pending>(workerCount * QUEUE_DEPTH_PER_WORKER);
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				runWriter();
+			}
+		}, "CompressingPublisher-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Submits a payload for compression and publishing. The payload must
+	 * not be modified afterwards.
+	 *
+	 * @throws JCSMPException if an earlier publish failed
+	 * @throws InterruptedException if interrupted while waiting for room
+	 */
+	public void send(final byte[] payload, Destination dest) throws JCSMPException, InterruptedException {
+		if (closed)
+			throw new IllegalStateException("CompressingPublisher is closed");
+		throwWriteError();
+		Future<byte[]> compressed = null;
+		if (shouldCompress(payload.length)) {
+			compressed = workers.submit(new Callable<byte[]>() {
+				public byte[] call() {
+					return compress(payload);
+				}
+			});
+		}
+		inOrder.put(new Pending(compressed, payload, dest));
+	}
+
+	/**
+	 * Sets the largest ratio of compressed to original size for which a
+	 * compressed payload is worth sending. Default: 0.9.
+	 */
+	public void setMaxUsefulRatio(double ratio) {
+		if (ratio <= 0)
+			throw new IllegalArgumentException("Invalid ratio: " + ratio);
+		this.maxUsefulRatio = ratio;
+	}
+
+	/**
+	 * Publishes the submitted payloads, then stops the worker and writer
+	 * threads and releases the compressors.
+	 *
+	 * @throws JCSMPException if a publish failed
+	 */
+	public void close() throws JCSMPException, InterruptedException {
+		if (closed)
+			return;
+		closed = true;
+		inOrder.put(END);
+		writer.join();
+		workers.shutdown();
+		// The compressors are not thread-safe: only end them once no
+		// worker can be using them.
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		CompressionBackend.Compressor compressor;
+		while ((compressor = allCompressors.poll()) != null) {
+			compressor.end();
+		}
+		throwWriteError();
+	}
+
+	/**
+	 * The number of messages published.
+	 */
+	public long getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * The number of messages published uncompressed.
+	 */
+	public long getBypassedCount() {
+		return bypassedCount;
+	}
+
+	/**
+	 * The ratio of published to original payload bytes so far, including
+	 * payloads published uncompressed.
+	 */
+	public double getCompressionRatio() {
+		return originalBytes == 0 ? 1.0 : (double) sentBytes / originalBytes;
+	}
+
+	/**
+	 * The time spent compressing so far, summed over the worker threads, in
+	 * nanoseconds.
+	 */
+	public long getCompressNanos() {
+		return compressNanos.get();
+	}
+
+	/**
+	 * Returns the payload of a message, decompressing it with the JDK
+	 * backend if it was published by a CompressingPublisher.
+	 *
+	 * @throws SDTException if the user properties cannot be read
+	 * @throws DataFormatException if the payload is corrupt, or its
+	 *             original length is missing or out of range
+	 */
+	public static byte[] decompress(BytesXMLMessage msg) throws SDTException, DataFormatException {
+		return decompress(msg, CompressionBackends.JDK);
+	}
+
+	/**
+	 * Returns the payload of a message, decompressing it with the given
+	 * backend if it was published by a CompressingPublisher. The payload of
+	 * a message that is not compressed may be returned in the message's own
+	 * attachment array, which must not be modified. Decompressors are
+	 * pooled per backend, and reused across calls.
+	 *
+	 * @throws DataFormatException if the payload is corrupt, or its
+	 *             original length is missing or out of range
+	 */
+	public static byte[] decompress(BytesXMLMessage msg, CompressionBackend backend)
+		throws SDTException, DataFormatException {
+		ByteBuffer attachment = Attachments.view(msg);
+		SDTMap props = msg.getProperties();
+		if (props == null || !DEFLATE.equals(props.getString(ENCODING_PROPERTY)))
+			return Attachments.toArray(attachment);
+
+		// Decompress from the message's own array, without copying it.
+		int length = CompressionBackends.checkDecompressedLength(props.getInteger(ORIGINAL_LENGTH_PROPERTY),
+			attachment.remaining());
+		byte[] payload = new byte[length];
+		Queue<CompressionBackend.Decompressor> pool = DECOMPRESSORS.get(backend);
+		if (pool == null) {
+			pool = new ConcurrentLinkedQueue<CompressionBackend.Decompressor>();
+			Queue<CompressionBackend.Decompressor> existing = DECOMPRESSORS.putIfAbsent(backend, pool);
+			if (existing != null)
+				pool = existing;
+		}
+		CompressionBackend.Decompressor decompressor = pool.poll();
+		if (decompressor == null)
+			decompressor = backend.newDecompressor();
+		try {
+			decompressor.decompress(attachment.array(), attachment.arrayOffset() + attachment.position(),
+				attachment.remaining(), payload);
+		} finally {
+			pool.add(decompressor);
+		}
+		return payload;
+	}
+
+	private void throwWriteError() throws JCSMPException {
+		JCSMPException ex = writeError;
+		if (ex != null) {
+			writeError = null;
+			throw ex;
+		}
+	}
+
+	/*
+	 * Whether the next payload should be compressed, or skipped while
+	 * backing off after an incompressible payload.
+	 */
+	private boolean shouldCompress(int length) {
+		if (length < MIN_COMPRESS_LENGTH)
+			return false;
+		synchronized (bypassLock) {
+			if (skipRemaining > 0) {
+				skipRemaining--;
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Runs on a worker thread. Returns null if the payload should be sent
+	 * uncompressed.
+	 */
+	private byte[] compress(byte[] payload) {
+		long start = System.nanoTime();
+		byte[] compressed = compressors.get().compress(payload, 0, payload.length);
+		compressNanos.addAndGet(System.nanoTime() - start);
+
+		boolean useful = compressed.length <= payload.length * maxUsefulRatio;
+		synchronized (bypassLock) {
+			if (useful) {
+				skipInterval = 0;
+			} else {
+				skipInterval = (skipInterval == 0) ? 1 : Math.min(skipInterval * 2, MAX_SKIP_INTERVAL);
+				skipRemaining = skipInterval;
+			}
+		}
+		return useful ? compressed : null;
+	}
+
+	/*
+	 * Publishes payloads in submission order.
+	 */
+	private void runWriter() {
+		while (true) {
+			Pending next;
+			try {
+				next = inOrder.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (next == END)
+				return;
+			try {
+				byte[] compressed = (next.compressed != null) ? next.compressed.get() : null;
+				BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				msg.setDeliveryMode(mode);
+				if (compressed != null) {
+					msg.writeAttachment(compressed);
+					SDTMap props = JCSMPFactory.onlyInstance().createMap();
+					props.putString(ENCODING_PROPERTY, DEFLATE);
+					props.putInteger(ORIGINAL_LENGTH_PROPERTY, next.payload.length);
+					msg.setProperties(props);
+				} else {
+					msg.writeAttachment(next.payload);
+				}
+				prod.send(msg, next.dest);
+				sentCount++;
+				originalBytes += next.payload.length;
+				if (compressed != null) {
+					sentBytes += compressed.length;
+				} else {
+					sentBytes += next.payload.length;
+					bypassedCount++;
+				}
+			} catch (JCSMPException ex) {
+				// Reported to the next send() or close() call.
+				writeError = ex;
+			} catch (ExecutionException ex) {
+				writeError = new JCSMPException("Compression failed", ex.getCause());
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+}
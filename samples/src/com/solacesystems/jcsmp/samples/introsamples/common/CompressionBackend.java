@@ -0,0 +1,89 @@
+/**
+ * CompressionBackend.java
+ *
+ * A pluggable zlib implementation for payload compression.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * Creates compressors and decompressors for the zlib format (RFC 1950).
+ * All backends produce and accept the same format, so a payload
+ * compressed with one backend can be decompressed with any other.
+ *
+ * See {@link CompressionBackends} for the available backends.
+ */
+public interface CompressionBackend {
+
+	/**
+	 * Compresses payloads. A compressor must only be used by one thread at
+	 * a time, and may be reused for any number of payloads.
+	 */
+	interface Compressor {
+		/**
+		 * Compresses a payload into a complete zlib stream.
+		 *
+		 * @return a new array holding exactly the compressed bytes
+		 */
+		byte[] compress(byte[] in, int offset, int length);
+
+		/**
+		 * Releases the compressor's resources.
+		 */
+		void end();
+	}
+
+	/**
+	 * Decompresses payloads. A decompressor must only be used by one thread
+	 * at a time, and may be reused for any number of payloads.
+	 */
+	interface Decompressor {
+		/**
+		 * Decompresses a complete zlib stream.
+		 *
+		 * @param out receives the payload, whose length must be known
+		 * @throws DataFormatException if the stream is corrupt, or does not
+		 *             hold exactly out.length bytes
+		 */
+		void decompress(byte[] in, int offset, int length, byte[] out) throws DataFormatException;
+
+		/**
+		 * Releases the decompressor's resources.
+		 */
+		void end();
+	}
+
+	/**
+	 * The backend name, for instance "jdk".
+	 */
+	String getName();
+
+	/**
+	 * @param level the compression level, 1 (fastest) to 9 (best)
+	 */
+	Compressor newCompressor(int level);
+
+	/**
+	 * Creates a compressor priming every stream with a preset dictionary,
+	 * which must be given to the decompressor as well.
+	 *
+	 * @param dictionary the dictionary, or null for none
+	 */
+	Compressor newCompressor(int level, byte[] dictionary);
+
+	Decompressor newDecompressor();
+
+	/**
+	 * Creates a decompressor for streams compressed with a preset
+	 * dictionary. Its decompress() throws a DataFormatException if a stream
+	 * needs a dictionary and none is set, or was compressed with another
+	 * one.
+	 *
+	 * @param dictionary the dictionary, or null for none
+	 */
+	Decompressor newDecompressor(byte[] dictionary);
+}
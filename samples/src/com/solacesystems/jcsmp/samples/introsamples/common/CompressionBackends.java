@@ -0,0 +1,275 @@
+/**
+ * CompressionBackends.java
+ *
+ * The available compression backends.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.jcraft.jzlib.JZlib;
+import com.jcraft.jzlib.ZStream;
+
+/**
+ * Provides the {@link CompressionBackend} implementations:
+ *  - {@link #JDK}, the default, uses java.util.zip, which is backed by the
+ *    native zlib library and is usually the fastest.
+ *  - {@link #JZLIB} uses the pure-Java jzlib library shipped with the API,
+ *    as a fallback where the native library is unavailable or unsuitable.
+ */
+public final class CompressionBackends {
+	/**
+	 * The largest payload length accepted by
+	 * {@link #checkDecompressedLength(Integer, int)}.
+	 */
+	public static final int MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+	// Input block size of the jzlib compressor.
+	private static final int JZLIB_BLOCK_SIZE = 65536;
+	// The largest ratio of decompressed to compressed size zlib can reach.
+	private static final int MAX_ZLIB_RATIO = 1032;
+
+	/** java.util.zip Deflater and Inflater. */
+	public static final CompressionBackend JDK = new CompressionBackend() {
+		public String getName() {
+			return "jdk";
+		}
+
+		public Compressor newCompressor(int level) {
+			return newCompressor(level, null);
+		}
+
+		public Compressor newCompressor(final int level, final byte[] dictionary) {
+			checkLevel(level);
+			return new Compressor() {
+				private final Deflater deflater = new Deflater(level);
+
+				public byte[] compress(byte[] in, int offset, int length) {
+					deflater.reset();
+					if (dictionary != null)
+						deflater.setDictionary(dictionary);
+					deflater.setInput(in, offset, length);
+					deflater.finish();
+					byte[] out = new byte[initialOutputSize(length)];
+					int written = 0;
+					while (!deflater.finished()) {
+						if (written == out.length)
+							out = Arrays.copyOf(out, out.length * 2);
+						written += deflater.deflate(out, written, out.length - written);
+					}
+					return Arrays.copyOf(out, written);
+				}
+
+				public void end() {
+					deflater.end();
+				}
+			};
+		}
+
+		public Decompressor newDecompressor() {
+			return newDecompressor(null);
+		}
+
+		public Decompressor newDecompressor(final byte[] dictionary) {
+			return new Decompressor() {
+				private final Inflater inflater = new Inflater();
+				private final byte[] spare = new byte[1];
+
+				public void decompress(byte[] in, int offset, int length, byte[] out) throws DataFormatException {
+					inflater.reset();
+					inflater.setInput(in, offset, length);
+					int written = 0;
+					while (!inflater.finished()) {
+						// Once the payload is complete, only the end of the
+						// stream may remain.
+						int n = (written < out.length) ? inflater.inflate(out, written, out.length - written)
+							: inflater.inflate(spare);
+						if (n > 0 && written == out.length)
+							throw new DataFormatException("Oversized payload");
+						if (n == 0 && !inflater.finished()) {
+							if (inflater.needsDictionary()) {
+								if (dictionary == null)
+									throw new DataFormatException("Payload requires a dictionary");
+								try {
+									inflater.setDictionary(dictionary);
+								} catch (IllegalArgumentException ex) {
+									// The payload was compressed with another
+									// dictionary.
+									throw new DataFormatException("Dictionary mismatch");
+								}
+							} else if (inflater.needsInput()) {
+								throw new DataFormatException("Truncated payload");
+							}
+						}
+						written += n;
+					}
+					if (written != out.length)
+						throw new DataFormatException("Payload length mismatch");
+				}
+
+				public void end() {
+					inflater.end();
+				}
+			};
+		}
+	};
+
+	/** The pure-Java com.jcraft.jzlib ZStream. */
+	public static final CompressionBackend JZLIB = new CompressionBackend() {
+		public String getName() {
+			return "jzlib";
+		}
+
+		public Compressor newCompressor(int level) {
+			return newCompressor(level, null);
+		}
+
+		public Compressor newCompressor(final int level, final byte[] dictionary) {
+			checkLevel(level);
+			return new Compressor() {
+				public byte[] compress(byte[] in, int offset, int length) {
+					// This jzlib version has no deflateReset(): a stream is
+					// set up for every payload.
+					ZStream z = new ZStream();
+					z.deflateInit(level);
+					try {
+						if (dictionary != null)
+							z.deflateSetDictionary(dictionary, dictionary.length);
+						int end = offset + length;
+						byte[] out = new byte[initialOutputSize(length)];
+						z.next_in = in;
+						z.next_in_index = offset;
+						z.avail_in = 0;
+						z.next_out = out;
+						z.next_out_index = 0;
+						z.avail_out = out.length;
+						int flush = JZlib.Z_NO_FLUSH;
+						while (true) {
+							if (z.avail_out == 0) {
+								out = Arrays.copyOf(out, out.length * 2);
+								z.next_out = out;
+								z.avail_out = out.length - z.next_out_index;
+							} else if (z.avail_in == 0 && flush != JZlib.Z_FINISH) {
+								// The input is fed in blocks, each ending with a
+								// sync flush: jzlib 1.0.7 can fail on some large
+								// inputs deflated in one go.
+								z.avail_in = Math.min(JZLIB_BLOCK_SIZE, end - z.next_in_index);
+								flush = (z.next_in_index + z.avail_in == end) ? JZlib.Z_FINISH : JZlib.Z_SYNC_FLUSH;
+							}
+							int err = z.deflate(flush);
+							if (err == JZlib.Z_STREAM_END)
+								return Arrays.copyOf(out, z.next_out_index);
+							if (err != JZlib.Z_OK && err != JZlib.Z_BUF_ERROR)
+								throw new IllegalStateException("jzlib deflate failed: " + z.msg);
+						}
+					} finally {
+						z.deflateEnd();
+					}
+				}
+
+				public void end() {
+				}
+			};
+		}
+
+		public Decompressor newDecompressor() {
+			return newDecompressor(null);
+		}
+
+		public Decompressor newDecompressor(final byte[] dictionary) {
+			return new Decompressor() {
+				public void decompress(byte[] in, int offset, int length, byte[] out) throws DataFormatException {
+					ZStream z = new ZStream();
+					z.inflateInit();
+					try {
+						z.next_in = in;
+						z.next_in_index = offset;
+						z.avail_in = length;
+						// One spare byte, so that an oversized payload is
+						// detected rather than truncated.
+						byte[] buf = new byte[out.length + 1];
+						z.next_out = buf;
+						z.next_out_index = 0;
+						z.avail_out = buf.length;
+						int err;
+						while (true) {
+							err = z.inflate(JZlib.Z_NO_FLUSH);
+							if (err == JZlib.Z_NEED_DICT) {
+								if (dictionary == null)
+									throw new DataFormatException("Payload requires a dictionary");
+								if (z.inflateSetDictionary(dictionary, dictionary.length) != JZlib.Z_OK)
+									throw new DataFormatException("Dictionary mismatch");
+								continue;
+							}
+							if (err != JZlib.Z_OK || z.avail_in == 0 || z.avail_out == 0)
+								break;
+						}
+						if (err != JZlib.Z_STREAM_END || z.next_out_index != out.length)
+							throw new DataFormatException("Corrupt payload: " + (z.msg != null ? z.msg : "length mismatch"));
+						System.arraycopy(buf, 0, out, 0, out.length);
+					} finally {
+						z.inflateEnd();
+					}
+				}
+
+				public void end() {
+				}
+			};
+		}
+	};
+
+	private CompressionBackends() {
+	}
+
+	/**
+	 * Returns the backend with the given name, "jdk" or "jzlib".
+	 *
+	 * @throws IllegalArgumentException if there is no such backend
+	 */
+	public static CompressionBackend forName(String name) {
+		if (JDK.getName().equalsIgnoreCase(name))
+			return JDK;
+		if (JZLIB.getName().equalsIgnoreCase(name))
+			return JZLIB;
+		throw new IllegalArgumentException("Unknown compression backend: " + name);
+	}
+
+	/**
+	 * Checks a payload length received along with a compressed payload,
+	 * before an array of that length is allocated for decompression. The
+	 * length comes off the wire, so it cannot be trusted: it must be
+	 * present, and no larger than {@link #MAX_DECOMPRESSED_LENGTH} or than
+	 * what zlib can produce from the compressed bytes.
+	 *
+	 * @param length the length, or null if the message carries none
+	 * @param compressedLength the length of the compressed payload
+	 * @return the length
+	 * @throws DataFormatException if the length is missing or out of range
+	 */
+	public static int checkDecompressedLength(Integer length, int compressedLength) throws DataFormatException {
+		if (length == null)
+			throw new DataFormatException("Missing payload length");
+		if (length < 0 || length > MAX_DECOMPRESSED_LENGTH || length > (long) compressedLength * MAX_ZLIB_RATIO)
+			throw new DataFormatException("Invalid payload length " + length + " for " + compressedLength
+				+ " compressed bytes");
+		return length;
+	}
+
+	private static void checkLevel(int level) {
+		if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+	}
+
+	/*
+	 * Usually enough, as incompressible data grows by a few bytes only.
+	 */
+	private static int initialOutputSize(int length) {
+		return length + length / 100 + 64;
+	}
+}
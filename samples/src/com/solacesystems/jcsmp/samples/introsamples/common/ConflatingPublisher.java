@@ -0,0 +1,180 @@
+/**
+ * ConflatingPublisher.java
+ *
+ * Last-value conflation of Direct messages that cannot be written yet.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.XMLMessage;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Publishes Direct messages from a writer thread and, while a message is
+ * waiting to be written, replaces it with any newer message that has the
+ * same conflation key.
+ *
+ * This suits last-value data such as prices or sensor readings: when the
+ * connection cannot keep up, the producer's send() blocks, and updates
+ * queue behind it. Rather than delivering stale updates late, only the
+ * latest update of each key is kept. Memory is bounded by the number of
+ * distinct keys, and the connection only carries the freshest data.
+ *
+ * Keys are written in the order in which they were first queued: a
+ * replaced message keeps its predecessor's place, so a frequently updated
+ * key cannot starve the others.
+ *
+ * Queued messages belong to the ConflatingPublisher: callers must not
+ * modify or reuse them. Messages must be session-independent (acquired
+ * from JCSMPFactory) Direct messages.
+ */
+public class ConflatingPublisher {
+
+	/**
+	 * Returns the conflation key of a message. Messages with equal keys
+	 * replace each other.
+	 */
+	public interface KeyExtractor {
+		Object keyOf(XMLMessage msg, Destination dest);
+	}
+
+	/** Conflates messages published to the same destination. */
+	public static final KeyExtractor BY_DESTINATION = new KeyExtractor() {
+		public Object keyOf(XMLMessage msg, Destination dest) {
+			return dest.getName();
+		}
+	};
+
+	/*
+	 * A message waiting to be written.
+	 */
+	private static final class Pending {
+		final XMLMessage msg;
+		final Destination dest;
+
+		Pending(XMLMessage msg, Destination dest) {
+			this.msg = msg;
+			this.dest = dest;
+		}
+	}
+
+	private final XMLMessageProducer prod;
+	private final KeyExtractor keys;
+	private final PublisherThread writer;
+
+	// Guarded by this.
+	private final Map<Object, Pending> pending = new LinkedHashMap<Object, Pending>();
+	private long sentCount = 0;
+	private long conflatedCount = 0;
+
+	/**
+	 * @param prod the producer, only used through this ConflatingPublisher
+	 *            once it is created
+	 * @param keys the conflation key extractor, for instance
+	 *            {@link #BY_DESTINATION}
+	 */
+	public ConflatingPublisher(XMLMessageProducer prod, KeyExtractor keys) {
+		this.prod = prod;
+		this.keys = keys;
+		this.writer = new PublisherThread(this, "ConflatingPublisher", new Runnable() {
+			public void run() {
+				runWriter();
+			}
+		});
+		this.writer.start();
+	}
+
+	/**
+	 * Queues a message, replacing any queued message with the same key.
+	 * Does not block.
+	 *
+	 * @throws JCSMPException if an earlier write failed
+	 */
+	public synchronized void send(XMLMessage msg, Destination dest) throws JCSMPException {
+		writer.checkOpen();
+		if (msg.getDeliveryMode() != DeliveryMode.DIRECT)
+			throw new IllegalArgumentException("Only Direct messages can be conflated");
+		if (pending.put(keys.keyOf(msg, dest), new Pending(msg, dest)) != null)
+			conflatedCount++;
+		notifyAll();
+	}
+
+	/**
+	 * Writes the queued messages and stops the writer thread.
+	 *
+	 * @throws JCSMPException if a write failed after the last send() call,
+	 *             in which case the last messages may not have been written
+	 */
+	public void close() throws JCSMPException, InterruptedException {
+		if (!writer.close())
+			return;
+		synchronized (this) {
+			writer.throwError();
+		}
+	}
+
+	/**
+	 * The number of messages written.
+	 */
+	public synchronized long getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * The number of messages replaced before they were written.
+	 */
+	public synchronized long getConflatedCount() {
+		return conflatedCount;
+	}
+
+	/**
+	 * The number of messages waiting to be written.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/*
+	 * Writes the oldest queued key's message. send() may block while the
+	 * connection is backed up; newer messages are conflated in the meantime.
+	 */
+	private void runWriter() {
+		while (true) {
+			Pending next;
+			synchronized (this) {
+				while (pending.isEmpty()) {
+					if (writer.isClosed())
+						return;
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				Iterator<Pending> it = pending.values().iterator();
+				next = it.next();
+				it.remove();
+			}
+			try {
+				prod.send(next.msg, next.dest);
+				synchronized (this) {
+					sentCount++;
+				}
+			} catch (JCSMPException ex) {
+				// Reported to the next send() or close() call.
+				synchronized (this) {
+					writer.setError(ex);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * DecodingListener.java
+ *
+ * Transparent decoding of encoded payloads on receive.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.XMLMessageListener;
+
+/**
+ * An {@link XMLMessageListener} that decodes payloads encoded with a
+ * {@link PayloadCodecRegistry} before passing messages to a delegate
+ * listener, so that the delegate only sees original payloads. Messages
+ * that are not encoded are passed unchanged.
+ *
+ * A message that cannot be decoded, because its codec is not registered
+ * or its payload is corrupt, is not passed to the delegate: the delegate's
+ * onException() is called instead.
+ */
+public class DecodingListener implements XMLMessageListener {
+	private final PayloadCodecRegistry registry;
+	private final XMLMessageListener delegate;
+
+	public DecodingListener(PayloadCodecRegistry registry, XMLMessageListener delegate) {
+		this.registry = registry;
+		this.delegate = delegate;
+	}
+
+	public void onReceive(BytesXMLMessage msg) {
+		try {
+			registry.decode(msg);
+		} catch (Exception ex) {
+			delegate.onException(new JCSMPException("Cannot decode message payload: " + ex.getMessage(), ex));
+			return;
+		}
+		delegate.onReceive(msg);
+	}
+
+	public void onException(JCSMPException exception) {
+		delegate.onException(exception);
+	}
+}
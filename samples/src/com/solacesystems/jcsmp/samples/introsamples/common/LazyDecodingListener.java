@@ -0,0 +1,52 @@
+/**
+ * LazyDecodingListener.java
+ *
+ * Decoding of encoded payloads on first access.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.XMLMessageListener;
+
+/**
+ * An {@link XMLMessageListener} that passes each message to a delegate
+ * as a {@link LazyPayload}, without decoding it. Unlike a
+ * {@link DecodingListener}, which decodes every payload on the receiving
+ * thread before the delegate sees the message, the payload is only
+ * decoded if the delegate reads it.
+ *
+ * Decoding errors are thrown to the delegate by LazyPayload#getBytes().
+ *
+ * The delegate receives the same LazyPayload for every message, valid only
+ * until its onReceive() returns: one that keeps a message must keep
+ * {@link LazyPayload#getMessage()} or the bytes instead. Use a listener
+ * for a single consumer, as it is not thread-safe.
+ */
+public class LazyDecodingListener implements XMLMessageListener {
+	private final LazyPayload.Listener delegate;
+	// Reused for every message.
+	private final LazyPayload payload;
+
+	public LazyDecodingListener(PayloadCodecRegistry registry, LazyPayload.Listener delegate) {
+		this.delegate = delegate;
+		this.payload = new LazyPayload(null, registry);
+	}
+
+	public void onReceive(BytesXMLMessage msg) {
+		payload.reset(msg);
+		try {
+			delegate.onReceive(payload);
+		} finally {
+			// Do not keep the message alive until the next one.
+			payload.reset(null);
+		}
+	}
+
+	public void onException(JCSMPException exception) {
+		delegate.onException(exception);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * LazyPayload.java
+ *
+ * A received message whose payload is decoded on first access.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.zip.DataFormatException;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.SDTException;
+
+/**
+ * A view of a received message that decodes the payload only when it is
+ * first read, and keeps the decoded payload for later reads. Listeners
+ * that handle many messages from their destination alone, and read the
+ * payload of only some of them, skip reading the user properties, copying
+ * the attachment and running the codec for the others.
+ *
+ * Only the work of a {@link PayloadCodecRegistry} is deferred: the API has
+ * already received the whole message. A payload that was not encoded with
+ * a registered codec saves no more than a copy of its attachment.
+ *
+ * A {@link LazyDecodingListener} passes the same instance to its
+ * {@link Listener} for every message, so that none is allocated per
+ * message: an instance is only valid until the listener returns. They are
+ * not thread-safe.
+ */
+public class LazyPayload {
+
+	/**
+	 * Receives the messages passed to a LazyDecodingListener.
+	 */
+	public interface Listener {
+		void onReceive(LazyPayload payload);
+
+		void onException(JCSMPException exception);
+	}
+
+	private final PayloadCodecRegistry registry;
+	private BytesXMLMessage msg;
+	private byte[] payload = null;
+
+	public LazyPayload(BytesXMLMessage msg, PayloadCodecRegistry registry) {
+		this.msg = msg;
+		this.registry = registry;
+	}
+
+	/**
+	 * Points the view at another message, dropping the decoded payload of
+	 * the previous one.
+	 */
+	void reset(BytesXMLMessage msg) {
+		this.msg = msg;
+		this.payload = null;
+	}
+
+	/**
+	 * The received message, with its payload as received.
+	 */
+	public BytesXMLMessage getMessage() {
+		return msg;
+	}
+
+	/**
+	 * The message's destination. Reading it does not decode the payload.
+	 */
+	public Destination getDestination() {
+		return msg.getDestination();
+	}
+
+	/**
+	 * @return the payload, decoded on the first call if it is encoded; see
+	 *         PayloadCodecRegistry#decodedPayload()
+	 * @throws DataFormatException if the codec is not registered, or the
+	 *             payload is corrupt
+	 */
+	public byte[] getBytes() throws SDTException, DataFormatException {
+		if (payload == null)
+			payload = registry.decodedPayload(msg);
+		return payload;
+	}
+
+	/**
+	 * Whether the payload has been read.
+	 */
+	public boolean isDecoded() {
+		return payload != null;
+	}
+}
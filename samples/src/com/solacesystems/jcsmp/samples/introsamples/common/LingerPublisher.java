@@ -0,0 +1,188 @@
+/**
+ * LingerPublisher.java
+ *
+ * Application-level coalescing of small Direct messages into batched
+ * writes.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPSendMultipleEntry;
+import com.solacesystems.jcsmp.XMLMessage;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Holds Direct messages for up to a configured linger time, then publishes
+ * them together with a single
+ * {@link XMLMessageProducer#sendMultiple(JCSMPSendMultipleEntry[], int, int, int)}
+ * call.
+ *
+ * A batch is flushed when the first of these happens:
+ *  - The linger time has elapsed since the first message of the batch was
+ *    queued.
+ *  - The batch holds the configured number of attachment bytes.
+ *  - The batch holds 50 messages, the most sendMultiple() accepts.
+ *
+ * This trades a bounded amount of latency for fewer network writes, which
+ * sits between TCP_NODELAY (one write per message) and Nagle's algorithm
+ * (unpredictable delays of up to 40 ms).
+ *
+ * Queued messages belong to the LingerPublisher until they are flushed:
+ * callers must not modify or reuse them. Messages must be
+ * session-independent (acquired from JCSMPFactory) Direct messages.
+ */
+public class LingerPublisher {
+	// The maximum number of entries accepted by a single sendMultiple() call.
+	public static final int MAX_BATCH_SIZE = 50;
+
+	private final XMLMessageProducer prod;
+	private final long lingerNanos;
+	private final int maxBatchBytes;
+	private final JCSMPSendMultipleEntry[] batch = new JCSMPSendMultipleEntry[MAX_BATCH_SIZE];
+	private final PublisherThread flusher;
+
+	private int batchSize = 0;
+	private int batchBytes = 0;
+	private long deadline = 0;
+
+	private long flushCount = 0;
+	private long msgCount = 0;
+
+	/**
+	 * @param prod a streaming producer, only used through this
+	 *            LingerPublisher once it is created
+	 * @param lingerMicros how long a message may wait for others before its
+	 *            batch is flushed
+	 * @param maxBatchBytes attachment bytes that trigger an immediate flush
+	 */
+	public LingerPublisher(XMLMessageProducer prod, long lingerMicros, int maxBatchBytes) {
+		if (lingerMicros < 0 || maxBatchBytes < 1)
+			throw new IllegalArgumentException("Invalid linger settings");
+		this.prod = prod;
+		this.lingerNanos = lingerMicros * 1000;
+		this.maxBatchBytes = maxBatchBytes;
+		for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+			batch[i] = JCSMPFactory.onlyInstance().createSendMultipleEntry(null, null);
+		}
+		this.flusher = new PublisherThread(this, "LingerPublisher", new Runnable() {
+			public void run() {
+				runFlusher();
+			}
+		});
+		this.flusher.start();
+	}
+
+	/**
+	 * Queues a message, flushing the batch if it is full.
+	 *
+	 * @throws JCSMPException if a flush failed, including an earlier
+	 *             linger-triggered flush
+	 */
+	public synchronized void send(XMLMessage msg, Destination dest) throws JCSMPException {
+		flusher.checkOpen();
+		if (msg.getDeliveryMode() != DeliveryMode.DIRECT)
+			throw new IllegalArgumentException("Only Direct messages can be lingered");
+
+		batch[batchSize].setMessage(msg).setDestination(dest);
+		batchSize++;
+		batchBytes += msg.getAttachmentContentLength() + msg.getContentLength();
+		if (batchSize == 1) {
+			deadline = System.nanoTime() + lingerNanos;
+			notifyAll();
+		}
+		if (batchSize == MAX_BATCH_SIZE || batchBytes >= maxBatchBytes || lingerNanos == 0)
+			flush();
+	}
+
+	/**
+	 * Publishes all queued messages now.
+	 */
+	public synchronized void flush() throws JCSMPException {
+		if (batchSize == 0)
+			return;
+		try {
+			int written = 0;
+			while (written < batchSize) {
+				written += prod.sendMultiple(batch, written, batchSize - written, 0);
+			}
+			flushCount++;
+			msgCount += batchSize;
+		} finally {
+			for (int i = 0; i < batchSize; i++) {
+				batch[i].setMessage(null).setDestination(null);
+			}
+			batchSize = 0;
+			batchBytes = 0;
+		}
+	}
+
+	/**
+	 * Flushes queued messages and stops the linger timer.
+	 *
+	 * @throws JCSMPException if a flush failed
+	 */
+	public void close() throws JCSMPException, InterruptedException {
+		if (!flusher.close())
+			return;
+		synchronized (this) {
+			flush();
+			flusher.throwError();
+		}
+	}
+
+	/**
+	 * The number of sendMultiple() batches written so far.
+	 */
+	public synchronized long getFlushCount() {
+		return flushCount;
+	}
+
+	/**
+	 * The number of messages written so far.
+	 */
+	public synchronized long getMessageCount() {
+		return msgCount;
+	}
+
+	/*
+	 * Flushes batches whose linger time has elapsed. Waits on this object's
+	 * monitor while there is no batch, and parks until the deadline
+	 * otherwise.
+	 */
+	private void runFlusher() {
+		while (true) {
+			long waitNanos;
+			synchronized (this) {
+				if (flusher.isClosed())
+					return;
+				if (batchSize == 0) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+					continue;
+				}
+				waitNanos = deadline - System.nanoTime();
+				if (waitNanos <= 0) {
+					try {
+						flush();
+					} catch (JCSMPException ex) {
+						// Reported to the next send() or close() call.
+						flusher.setError(ex);
+					}
+					continue;
+				}
+			}
+			LockSupport.parkNanos(this, waitNanos);
+		}
+	}
+}
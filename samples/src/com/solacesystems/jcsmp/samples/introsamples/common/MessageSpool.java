@@ -0,0 +1,160 @@
+/**
+ * MessageSpool.java
+ *
+ * A bounded, memory-mapped, first-in first-out spool of messages.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Stores {topic, payload} records in a memory-mapped file, so that a
+ * publisher can keep accepting messages at memory speed while it cannot
+ * send them, and send them later in the same order.
+ *
+ * Records are appended at the tail of the file and read from the head.
+ * Once every record has been read, the spool rewinds to the start of the
+ * file. When a record does not fit in the remaining space, records not
+ * yet read are first moved to the start of the file; if the record still
+ * does not fit, the spool is full.
+ *
+ * The spool is a buffer for the current process, not a persistent store:
+ * its content is discarded when it is opened.
+ *
+ * Instances are thread-safe.
+ */
+public class MessageSpool {
+
+	/**
+	 * A record read from the spool.
+	 */
+	public static final class Record {
+		public final String topic;
+		public final byte[] payload;
+
+		Record(String topic, byte[] payload) {
+			this.topic = topic;
+			this.payload = payload;
+		}
+	}
+
+	// Record header: total length (int), topic length (short).
+	private static final int HEADER_SIZE = 6;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buf;
+	private int readPos = 0;
+	private int writePos = 0;
+	private int count = 0;
+
+	/**
+	 * Creates or truncates the spool file and maps it.
+	 *
+	 * @param path the spool file
+	 * @param size the spool size in bytes
+	 */
+	public MessageSpool(File path, int size) throws IOException {
+		this.file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		file.setLength(size);
+		this.buf = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @return false if the spool is full
+	 */
+	public synchronized boolean append(String topic, byte[] payload) {
+		byte[] topicBytes = topic.getBytes(UTF8);
+		int recordSize = HEADER_SIZE + topicBytes.length + payload.length;
+		if (recordSize > buf.capacity() || topicBytes.length > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Record too large for spool: " + recordSize);
+		while (writePos + recordSize > buf.capacity()) {
+			if (readPos == 0)
+				return false;
+			compact();
+		}
+		buf.position(writePos);
+		buf.putInt(recordSize);
+		buf.putShort((short) topicBytes.length);
+		buf.put(topicBytes);
+		buf.put(payload);
+		writePos += recordSize;
+		count++;
+		return true;
+	}
+
+	/**
+	 * Reads the oldest record without removing it.
+	 *
+	 * @return the record, or null if the spool is empty
+	 */
+	public synchronized Record peek() {
+		if (count == 0)
+			return null;
+		buf.position(readPos + 4);
+		byte[] topicBytes = new byte[buf.getShort()];
+		buf.get(topicBytes);
+		byte[] payload = new byte[buf.getInt(readPos) - HEADER_SIZE - topicBytes.length];
+		buf.get(payload);
+		return new Record(new String(topicBytes, UTF8), payload);
+	}
+
+	/**
+	 * Removes the oldest record.
+	 *
+	 * @return false if the spool is empty
+	 */
+	public synchronized boolean remove() {
+		if (count == 0)
+			return false;
+		readPos += buf.getInt(readPos);
+		count--;
+		if (count == 0)
+			readPos = writePos = 0;
+		return true;
+	}
+
+	/*
+	 * Moves the records not yet read to the start of the file.
+	 */
+	private void compact() {
+		buf.limit(writePos);
+		buf.position(readPos);
+		buf.compact();
+		buf.clear();
+		writePos -= readPos;
+		readPos = 0;
+	}
+
+	/**
+	 * The number of records held.
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * The number of bytes held, including record headers.
+	 */
+	public synchronized int bytesUsed() {
+		return writePos - readPos;
+	}
+
+	/**
+	 * Closes the spool file. The spool must not be used afterwards.
+	 */
+	public synchronized void close() throws IOException {
+		file.close();
+	}
+}
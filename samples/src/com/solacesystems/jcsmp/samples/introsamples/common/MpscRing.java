@@ -0,0 +1,123 @@
+/**
+ * MpscRing.java
+ *
+ * Bounded, lock-free multi-producer / single-consumer ring buffer.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer that any number of threads can offer to without
+ * locking, drained by a single consumer thread.
+ *
+ * Each slot carries a sequence number: producers claim a slot by advancing
+ * the shared tail with a compare-and-set, store their element, then
+ * publish it by advancing the slot's sequence. The consumer only reads
+ * slots whose sequence shows they have been published, so elements are
+ * consumed in the order their slots were claimed.
+ *
+ * {@link #offer(Object)} never blocks: it returns false when the ring is
+ * full, which lets callers apply their own backpressure policy.
+ */
+public final class MpscRing<E> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	// Only accessed by the consumer thread.
+	private long head = 0;
+
+	/**
+	 * @param capacity the ring capacity, rounded up to a power of two
+	 */
+	public MpscRing(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		this.capacity = size;
+		this.mask = size - 1;
+		this.elements = new AtomicReferenceArray<E>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Adds an element, from any thread.
+	 *
+	 * @return false if the ring is full
+	 */
+	public boolean offer(E e) {
+		if (e == null)
+			throw new NullPointerException();
+		while (true) {
+			long pos = tail.get();
+			int index = (int) (pos & mask);
+			long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					elements.lazySet(index, e);
+					sequences.lazySet(index, pos + 1);
+					return true;
+				}
+			} else if (diff < 0) {
+				// The slot still holds an element from the previous lap.
+				return false;
+			}
+			// Another producer claimed this slot first: retry.
+		}
+	}
+
+	/**
+	 * Removes the oldest element. Consumer thread only.
+	 *
+	 * @return the element, or null if the ring is empty
+	 */
+	public E poll() {
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1)
+			return null;
+		E e = elements.get(index);
+		elements.lazySet(index, null);
+		sequences.lazySet(index, head + capacity);
+		head++;
+		return e;
+	}
+
+	/**
+	 * Removes up to max elements into out, starting at index 0. Consumer
+	 * thread only.
+	 *
+	 * @return the number of elements removed
+	 */
+	public int drainTo(E[] out, int max) {
+		int n = 0;
+		E e;
+		while (n < max && (e = poll()) != null) {
+			out[n++] = e;
+		}
+		return n;
+	}
+
+	/**
+	 * An estimate of the number of elements in the ring.
+	 */
+	public int size() {
+		long size = tail.get() - head;
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+}
@@ -0,0 +1,227 @@
+/**
+ * OrderedDispatcher.java
+ *
+ * Parallel handling of received messages, in order per key.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.SDTException;
+import com.solacesystems.jcsmp.SDTMap;
+import com.solacesystems.jcsmp.XMLMessageListener;
+
+/**
+ * An {@link XMLMessageListener} that hands received messages to a pool of
+ * worker threads, each calling a delegate listener, so that a slow message
+ * does not delay unrelated messages and handling can use several cores.
+ *
+ * Each message has a key, extracted by a {@link KeyExtractor}. All
+ * messages with the same key go to the same worker, and are therefore
+ * handled in the order received, one at a time; messages with different
+ * keys may be handled concurrently. The delegate must be thread-safe.
+ *
+ * Each worker has a bounded queue: an {@link SpscRing}, as only the
+ * receiving thread adds to it and only the worker removes from it, so
+ * handing over a message takes no lock and allocates nothing. When a
+ * worker's queue is full, the receiving thread waits until it has room,
+ * which slows down delivery from the session rather than letting the
+ * backlog grow without bounds. Workers and the receiving thread wait
+ * according to a {@link WaitStrategy}. Exceptions thrown by the
+ * delegate's onReceive() are passed to its onException().
+ */
+public class OrderedDispatcher implements XMLMessageListener {
+
+	/**
+	 * Extracts the ordering key of a message.
+	 */
+	public interface KeyExtractor {
+		/**
+		 * @return the key; messages with a null key all go to the same
+		 *         worker
+		 */
+		Object keyOf(BytesXMLMessage msg);
+	}
+
+	/** Orders messages per destination. */
+	public static final KeyExtractor BY_DESTINATION = new KeyExtractor() {
+		public Object keyOf(BytesXMLMessage msg) {
+			return (msg.getDestination() != null) ? msg.getDestination().getName() : null;
+		}
+	};
+
+	/**
+	 * @return an extractor ordering messages per value of a user property
+	 */
+	public static KeyExtractor byProperty(final String name) {
+		return new KeyExtractor() {
+			public Object keyOf(BytesXMLMessage msg) {
+				SDTMap props = msg.getProperties();
+				try {
+					return (props != null && props.containsKey(name)) ? props.get(name) : null;
+				} catch (SDTException ex) {
+					return null;
+				}
+			}
+		};
+	}
+
+	/*
+	 * A worker thread and its queue.
+	 */
+	private final class Worker implements Runnable {
+		final SpscRing<BytesXMLMessage> queue;
+		// Waited on by the worker, signalled by the receiving thread.
+		final WaitStrategy.Waiter notEmpty;
+		// Waited on by the receiving thread, signalled by the worker.
+		final WaitStrategy.Waiter notFull;
+		final Thread thread;
+		// Written by the worker thread.
+		volatile long handled = 0;
+		// Written by the receiving thread.
+		volatile int maxDepth = 0;
+
+		Worker(int index, int capacity, WaitStrategy waitStrategy) {
+			this.queue = new SpscRing<BytesXMLMessage>(capacity);
+			this.notEmpty = waitStrategy.newWaiter();
+			this.notFull = waitStrategy.newWaiter();
+			this.thread = new Thread(this, "OrderedDispatcher-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		public void run() {
+			int idle = 0;
+			while (true) {
+				BytesXMLMessage msg = queue.poll();
+				if (msg == null) {
+					// Check the queue again after seeing the flag, so that
+					// messages queued before close() are handled.
+					if (closed && queue.size() == 0)
+						return;
+					notEmpty.idle(idle++);
+					continue;
+				}
+				idle = 0;
+				notFull.signal();
+				try {
+					delegate.onReceive(msg);
+				} catch (RuntimeException ex) {
+					delegate.onException(new JCSMPException("Message handler failed: " + ex.getMessage(), ex));
+				}
+				handled++;
+			}
+		}
+	}
+
+	private final XMLMessageListener delegate;
+	private final KeyExtractor keys;
+	private final Worker[] workers;
+	private volatile boolean closed = false;
+
+	/**
+	 * Starts the worker threads, which wait with
+	 * {@link WaitStrategy#BLOCKING}.
+	 *
+	 * @param delegate the listener called by the workers
+	 * @param workerCount the number of worker threads
+	 * @param queueCapacity the number of messages each worker can queue,
+	 *            rounded up to a power of two
+	 * @param keys the key extractor, for instance {@link #BY_DESTINATION}
+	 */
+	public OrderedDispatcher(XMLMessageListener delegate, int workerCount, int queueCapacity, KeyExtractor keys) {
+		this(delegate, workerCount, queueCapacity, keys, WaitStrategy.BLOCKING);
+	}
+
+	/**
+	 * Starts the worker threads.
+	 *
+	 * @param waitStrategy how workers wait for messages, and the receiving
+	 *            thread for room in a full queue
+	 */
+	public OrderedDispatcher(XMLMessageListener delegate, int workerCount, int queueCapacity, KeyExtractor keys,
+		WaitStrategy waitStrategy) {
+		if (workerCount < 1)
+			throw new IllegalArgumentException("Invalid worker count: " + workerCount);
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException("Invalid queue capacity: " + queueCapacity);
+		this.delegate = delegate;
+		this.keys = keys;
+		this.workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new Worker(i, queueCapacity, waitStrategy);
+			workers[i].thread.start();
+		}
+	}
+
+	public void onReceive(BytesXMLMessage msg) {
+		Worker worker = workers[workerIndex(keys.keyOf(msg))];
+		int idle = 0;
+		while (!worker.queue.offer(msg)) {
+			if (Thread.currentThread().isInterrupted()) {
+				delegate.onException(new JCSMPException("Interrupted while dispatching a message"));
+				return;
+			}
+			worker.notFull.idle(idle++);
+		}
+		worker.notEmpty.signal();
+		int depth = worker.queue.size();
+		if (depth > worker.maxDepth)
+			worker.maxDepth = depth;
+	}
+
+	public void onException(JCSMPException exception) {
+		delegate.onException(exception);
+	}
+
+	/**
+	 * Stops the workers once they have handled the messages already
+	 * queued. Call it after stopping the consumer.
+	 */
+	public void close() throws InterruptedException {
+		closed = true;
+		for (Worker worker : workers) {
+			worker.notEmpty.signal();
+			worker.thread.join();
+		}
+	}
+
+	/**
+	 * The number of worker threads.
+	 */
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	/**
+	 * The number of messages queued for a worker.
+	 */
+	public int getQueueDepth(int worker) {
+		return workers[worker].queue.size();
+	}
+
+	/**
+	 * The largest number of messages queued for a worker so far.
+	 */
+	public int getMaxQueueDepth(int worker) {
+		return workers[worker].maxDepth;
+	}
+
+	/**
+	 * The number of messages handled by a worker.
+	 */
+	public long getHandledCount(int worker) {
+		return workers[worker].handled;
+	}
+
+	private int workerIndex(Object key) {
+		if (key == null)
+			return 0;
+		// Spread the hash bits, as HashMap does.
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % workers.length;
+	}
+}
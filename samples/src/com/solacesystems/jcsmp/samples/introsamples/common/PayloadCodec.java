@@ -0,0 +1,47 @@
+/**
+ * PayloadCodec.java
+ *
+ * A message-level payload encoding, identified in the message's user
+ * properties.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * Encodes and decodes message payloads. A codec is identified by its codec
+ * id and, for codecs using pre-shared data such as a compression
+ * dictionary, a dictionary id. Both ids are carried in the user properties
+ * of encoded messages, so that receivers can select the same codec from a
+ * {@link PayloadCodecRegistry}.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface PayloadCodec {
+
+	/**
+	 * The codec id, for instance "deflate".
+	 */
+	String getCodecId();
+
+	/**
+	 * The id of the pre-shared data used by this codec, or null.
+	 */
+	String getDictionaryId();
+
+	/**
+	 * @return a new array holding the encoded payload
+	 */
+	byte[] encode(byte[] payload, int offset, int length);
+
+	/**
+	 * @param originalLength the length of the payload before encoding
+	 * @return a new array holding the payload
+	 * @throws DataFormatException if the encoded payload is corrupt, or
+	 *             cannot hold originalLength bytes
+	 */
+	byte[] decode(byte[] encoded, int offset, int length, int originalLength) throws DataFormatException;
+}
@@ -0,0 +1,143 @@
+/**
+ * PayloadCodecRegistry.java
+ *
+ * The payload codecs known to an application, and the user properties
+ * identifying them in messages.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.SDTException;
+import com.solacesystems.jcsmp.SDTMap;
+import com.solacesystems.jcsmp.XMLMessage;
+
+/**
+ * Holds {@link PayloadCodec}s by codec id and dictionary id, encodes
+ * message payloads with a chosen codec, and decodes received payloads with
+ * the codec named in their user properties.
+ *
+ * Encoded messages carry these user properties:
+ *  - {@link #CODEC_PROPERTY}: the codec id.
+ *  - {@link #DICTIONARY_PROPERTY}: the dictionary id, if the codec has one.
+ *  - {@link #ORIGINAL_LENGTH_PROPERTY}: the payload length before
+ *    encoding.
+ *
+ * Publishers and subscribers register the same codecs, typically when the
+ * application starts. Instances are thread-safe.
+ */
+public class PayloadCodecRegistry {
+	/** User property holding the codec id. */
+	public static final String CODEC_PROPERTY = "sample_codec";
+	/** User property holding the dictionary id. */
+	public static final String DICTIONARY_PROPERTY = "sample_dictionary";
+	/** User property holding the payload length before encoding. */
+	public static final String ORIGINAL_LENGTH_PROPERTY = "sample_codec_original_length";
+
+	private final Map<String, PayloadCodec> codecs = new ConcurrentHashMap<String, PayloadCodec>();
+
+	/**
+	 * Registers a codec, replacing any codec with the same ids.
+	 */
+	public void register(PayloadCodec codec) {
+		codecs.put(key(codec.getCodecId(), codec.getDictionaryId()), codec);
+	}
+
+	/**
+	 * @return the codec, or null if none is registered with these ids
+	 */
+	public PayloadCodec get(String codecId, String dictionaryId) {
+		return codecs.get(key(codecId, dictionaryId));
+	}
+
+	/**
+	 * Sets a message's attachment to an encoded payload, and adds the user
+	 * properties identifying the codec to the message's properties.
+	 */
+	public void encode(XMLMessage msg, byte[] payload, PayloadCodec codec) throws SDTException {
+		msg.writeAttachment(codec.encode(payload, 0, payload.length));
+		SDTMap props = msg.getProperties();
+		if (props == null)
+			props = JCSMPFactory.onlyInstance().createMap();
+		props.putString(CODEC_PROPERTY, codec.getCodecId());
+		if (codec.getDictionaryId() != null)
+			props.putString(DICTIONARY_PROPERTY, codec.getDictionaryId());
+		props.putInteger(ORIGINAL_LENGTH_PROPERTY, payload.length);
+		msg.setProperties(props);
+	}
+
+	/**
+	 * Replaces the attachment of an encoded message with the decoded
+	 * payload, and removes the codec user properties. Messages that are not
+	 * encoded are left unchanged.
+	 *
+	 * @return whether the message was encoded
+	 * @throws DataFormatException if the codec is not registered, the
+	 *             original length is missing or out of range, or the
+	 *             payload is corrupt
+	 */
+	public boolean decode(BytesXMLMessage msg) throws SDTException, DataFormatException {
+		SDTMap props = msg.getProperties();
+		if (props == null || !props.containsKey(CODEC_PROPERTY))
+			return false;
+		byte[] payload = decode(msg, props);
+		// Writing an empty attachment leaves the previous one in place.
+		msg.clearAttachment();
+		if (payload.length > 0)
+			msg.writeAttachment(payload);
+		props.remove(CODEC_PROPERTY);
+		props.remove(DICTIONARY_PROPERTY);
+		props.remove(ORIGINAL_LENGTH_PROPERTY);
+		msg.setProperties(props);
+		return true;
+	}
+
+	/**
+	 * Returns the payload of a message, decoded if it is encoded. Unlike
+	 * {@link #decode(BytesXMLMessage)}, the message is left unchanged. The
+	 * payload of a message that is not encoded may be returned in the
+	 * message's own attachment array, which must not be modified.
+	 *
+	 * @throws DataFormatException if the codec is not registered, the
+	 *             original length is missing or out of range, or the
+	 *             payload is corrupt
+	 */
+	public byte[] decodedPayload(BytesXMLMessage msg) throws SDTException, DataFormatException {
+		SDTMap props = msg.getProperties();
+		if (props == null || !props.containsKey(CODEC_PROPERTY))
+			return Attachments.toArray(Attachments.view(msg));
+		return decode(msg, props);
+	}
+
+	private byte[] decode(BytesXMLMessage msg, SDTMap props) throws SDTException, DataFormatException {
+		String codecId = props.getString(CODEC_PROPERTY);
+		String dictionaryId = props.containsKey(DICTIONARY_PROPERTY) ? props.getString(DICTIONARY_PROPERTY) : null;
+		PayloadCodec codec = get(codecId, dictionaryId);
+		if (codec == null)
+			throw new DataFormatException("No codec registered for " + key(codecId, dictionaryId));
+
+		// The length comes off the wire: codecs size their output from it.
+		Integer originalLength = props.getInteger(ORIGINAL_LENGTH_PROPERTY);
+		if (originalLength == null)
+			throw new DataFormatException("Missing payload length");
+		if (originalLength < 0 || originalLength > CompressionBackends.MAX_DECOMPRESSED_LENGTH)
+			throw new DataFormatException("Invalid payload length " + originalLength);
+
+		// Decode from the message's own array, without copying it.
+		ByteBuffer encoded = Attachments.view(msg);
+		return codec.decode(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining(),
+			originalLength);
+	}
+
+	private static String key(String codecId, String dictionaryId) {
+		return (dictionaryId == null) ? codecId : codecId + "/" + dictionaryId;
+	}
+}
@@ -0,0 +1,379 @@
+/**
+ * PublishAckTracker.java
+ *
+ * Tracks acknowledgements of Guaranteed messages using pooled completion
+ * handles.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPStreamingPublishCorrelatingEventHandler;
+import com.solacesystems.jcsmp.XMLMessage;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * A streaming publish event handler that completes a {@link PublishHandle}
+ * for every Guaranteed message sent through it.
+ *
+ * Each message sent with {@link #send(XMLMessageProducer, XMLMessage, Destination)}
+ * uses its handle as correlation key, so acknowledgements and rejections are
+ * matched to their message without any application-side map. Handles are
+ * pooled: once the application is done with a completed handle it should
+ * call {@link PublishHandle#release()} so it can be reused by a later send.
+ *
+ * A handle completes successfully when the appliance acknowledges the
+ * message, and with an error when the message is rejected or cannot be
+ * delivered after the API's retransmissions time out.
+ *
+ * A window can be set with {@link #setWindow(int, WritabilityListener)}
+ * to publish without ever blocking: {@link #trySend(XMLMessageProducer, XMLMessage, Destination)}
+ * returns null instead of sending when the window is full, and the
+ * WritabilityListener is notified once acknowledgements free space in it.
+ * With a window no larger than the session's PUB_ACK_WINDOW_SIZE, the
+ * API's own publish window never closes. The window can also be sized
+ * automatically from acknowledgement round-trip times with
+ * {@link #setAdaptiveWindow(AdaptiveWindow, WritabilityListener)}.
+ */
+public class PublishAckTracker implements JCSMPStreamingPublishCorrelatingEventHandler {
+
+	/**
+	 * Notified when a handle completes. Invoked from the API thread: it must
+	 * not block or call blocking API methods.
+	 */
+	public interface CompletionListener {
+		void onComplete(PublishHandle handle);
+	}
+
+	/**
+	 * Notified when the window reopens after a call to trySend() found it
+	 * full. Invoked from the API thread: it must not block or call blocking
+	 * API methods.
+	 */
+	public interface WritabilityListener {
+		void onWritable();
+	}
+
+	/**
+	 * A reusable completion handle for one Guaranteed message.
+	 */
+	public final class PublishHandle {
+		private static final int PENDING = 0;
+		private static final int ACKED = 1;
+		private static final int FAILED = 2;
+
+		private long id;
+		private long sentNanos;
+		private int state = PENDING;
+		// Set while complete() runs the listeners, which may still read the
+		// handle: it is not released or reused, and await() does not
+		// return, until they are done.
+		private boolean completing = false;
+		private boolean releaseRequested = false;
+		private JCSMPException cause;
+		private Object userData;
+
+		/**
+		 * The sequence number of the send this handle was used for, unique
+		 * per tracker.
+		 */
+		public synchronized long getId() {
+			return id;
+		}
+
+		public synchronized boolean isDone() {
+			return state != PENDING;
+		}
+
+		public synchronized boolean isSuccess() {
+			return state == ACKED;
+		}
+
+		/**
+		 * The cause of a failed send, or null.
+		 */
+		public synchronized JCSMPException getCause() {
+			return cause;
+		}
+
+		public synchronized Object getUserData() {
+			return userData;
+		}
+
+		/**
+		 * Replaces the user data. To attach data to a send, pass it to
+		 * {@link PublishAckTracker#send(XMLMessageProducer, XMLMessage, Destination, Object)}
+		 * instead: the handle may complete before send() returns.
+		 */
+		public synchronized void setUserData(Object userData) {
+			this.userData = userData;
+		}
+
+		/**
+		 * Waits up to timeoutMs for the handle to complete and for the
+		 * CompletionListener to return.
+		 *
+		 * @return true if the handle completed
+		 */
+		public synchronized boolean await(long timeoutMs) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeoutMs;
+			while (state == PENDING || completing) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					return false;
+				wait(remaining);
+			}
+			return true;
+		}
+
+		/**
+		 * Returns a completed handle to the pool. The handle must not be used
+		 * after it is released. If the CompletionListener is still running,
+		 * for instance when it releases the handle itself, the handle only
+		 * returns to the pool once it is done.
+		 */
+		public void release() {
+			synchronized (this) {
+				if (state == PENDING)
+					throw new IllegalStateException("Cannot release a pending handle");
+				if (completing) {
+					releaseRequested = true;
+					return;
+				}
+			}
+			recycle();
+		}
+
+		private void recycle() {
+			synchronized (this) {
+				cause = null;
+				userData = null;
+			}
+			pool.offer(this);
+		}
+
+		private synchronized void reset(long newId, Object newUserData) {
+			id = newId;
+			sentNanos = System.nanoTime();
+			state = PENDING;
+			userData = newUserData;
+		}
+
+		private void complete(JCSMPException failure) {
+			long rttNanos;
+			synchronized (this) {
+				if (state != PENDING)
+					return;
+				state = (failure == null) ? ACKED : FAILED;
+				cause = failure;
+				completing = true;
+				rttNanos = System.nanoTime() - sentNanos;
+			}
+			try {
+				AdaptiveWindow aw = adaptiveWindow;
+				if (aw != null) {
+					long now = System.nanoTime();
+					window = (failure == null) ? aw.onAck(rttNanos, now) : aw.onFailure(now);
+				}
+				int remaining = outstanding.decrementAndGet();
+				if (listener != null)
+					listener.onComplete(this);
+				if (remaining < window && unwritable.compareAndSet(true, false))
+					writabilityListener.onWritable();
+			} finally {
+				boolean released;
+				synchronized (this) {
+					completing = false;
+					released = releaseRequested;
+					releaseRequested = false;
+					notifyAll();
+				}
+				if (released)
+					recycle();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(getId());
+		}
+	}
+
+	private final ConcurrentLinkedQueue<PublishHandle> pool = new ConcurrentLinkedQueue<PublishHandle>();
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final CompletionListener listener;
+	private final AtomicInteger handleCount = new AtomicInteger();
+	private long nextId = 1;
+	private volatile int window = Integer.MAX_VALUE;
+	private volatile WritabilityListener writabilityListener;
+	private volatile AdaptiveWindow adaptiveWindow;
+	// Set when trySend() found the window full and the listener is owed a
+	// notification.
+	private final AtomicBoolean unwritable = new AtomicBoolean();
+
+	public PublishAckTracker() {
+		this(null);
+	}
+
+	/**
+	 * @param listener (optional) notified when any handle completes
+	 */
+	public PublishAckTracker(CompletionListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sends a Guaranteed message and returns the handle that completes
+	 * when the message is acknowledged or rejected. The producer must have
+	 * been created with this tracker as its event handler. The message's
+	 * correlation key is overwritten.
+	 *
+	 * @throws JCSMPException if the message cannot be sent; no handle is
+	 *             returned and the CompletionListener is not called
+	 */
+	public PublishHandle send(XMLMessageProducer prod, XMLMessage msg, Destination dest) throws JCSMPException {
+		return send(prod, msg, dest, null);
+	}
+
+	/**
+	 * Sends a Guaranteed message, as
+	 * {@link #send(XMLMessageProducer, XMLMessage, Destination)} does, with
+	 * user data attached to its handle. The user data is set before the
+	 * message is sent, so it is visible to the CompletionListener even when
+	 * the acknowledgement arrives before this method returns; setting it on
+	 * the returned handle instead would race with the acknowledgement.
+	 */
+	public PublishHandle send(XMLMessageProducer prod, XMLMessage msg, Destination dest, Object userData)
+		throws JCSMPException {
+		outstanding.incrementAndGet();
+		return doSend(prod, msg, dest, userData);
+	}
+
+	/**
+	 * Sends a Guaranteed message if the window has room for it, as
+	 * {@link #send(XMLMessageProducer, XMLMessage, Destination)} does.
+	 *
+	 * @return the message's handle, or null if the window is full and the
+	 *         message was not sent. The WritabilityListener is notified
+	 *         when the window reopens.
+	 */
+	public PublishHandle trySend(XMLMessageProducer prod, XMLMessage msg, Destination dest) throws JCSMPException {
+		while (true) {
+			int n = outstanding.get();
+			if (n < window) {
+				if (outstanding.compareAndSet(n, n + 1))
+					return doSend(prod, msg, dest, null);
+				continue;
+			}
+			unwritable.set(true);
+			// An acknowledgement may have freed space before the flag was
+			// set, in which case no notification is coming: retry.
+			if (outstanding.get() < window && unwritable.compareAndSet(true, false))
+				continue;
+			return null;
+		}
+	}
+
+	private PublishHandle doSend(XMLMessageProducer prod, XMLMessage msg, Destination dest, Object userData)
+		throws JCSMPException {
+		PublishHandle handle = pool.poll();
+		if (handle == null) {
+			handle = new PublishHandle();
+			handleCount.incrementAndGet();
+		}
+		synchronized (this) {
+			handle.reset(nextId++, userData);
+		}
+		msg.setCorrelationKey(handle);
+		try {
+			prod.send(msg, dest);
+		} catch (JCSMPException ex) {
+			// The message was not sent: the failure is only reported to the
+			// caller, and the handle goes straight back to the pool.
+			msg.setCorrelationKey(null);
+			handle.recycle();
+			if (outstanding.decrementAndGet() < window && unwritable.compareAndSet(true, false))
+				writabilityListener.onWritable();
+			throw ex;
+		}
+		return handle;
+	}
+
+	/**
+	 * Limits the number of outstanding messages for trySend().
+	 *
+	 * @param window the maximum number of messages awaiting acknowledgement
+	 * @param writabilityListener notified when the window reopens
+	 */
+	public void setWindow(int window, WritabilityListener writabilityListener) {
+		if (window < 1)
+			throw new IllegalArgumentException("Window must be positive: " + window);
+		if (writabilityListener == null)
+			throw new NullPointerException("writabilityListener");
+		this.writabilityListener = writabilityListener;
+		this.window = window;
+	}
+
+	/**
+	 * Limits the number of outstanding messages for trySend() to a window
+	 * that adapts to the measured acknowledgement round-trip time.
+	 *
+	 * @param adaptiveWindow computes the window from acknowledgements
+	 * @param writabilityListener notified when the window reopens
+	 */
+	public void setAdaptiveWindow(AdaptiveWindow adaptiveWindow, WritabilityListener writabilityListener) {
+		setWindow(adaptiveWindow.getWindow(), writabilityListener);
+		this.adaptiveWindow = adaptiveWindow;
+	}
+
+	/**
+	 * The adaptive window set on this tracker, or null.
+	 */
+	public AdaptiveWindow getAdaptiveWindow() {
+		return adaptiveWindow;
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * The number of messages sent but not yet acknowledged or rejected.
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * The number of handles created so far. When handles are released
+	 * promptly, it stays close to the number of messages in flight.
+	 */
+	public int getHandleCount() {
+		return handleCount.get();
+	}
+
+	public void responseReceivedEx(Object key) {
+		if (key instanceof PublishHandle)
+			((PublishHandle) key).complete(null);
+	}
+
+	public void handleErrorEx(Object key, JCSMPException cause, long timestamp) {
+		if (key instanceof PublishHandle)
+			((PublishHandle) key).complete(cause);
+	}
+
+	public void handleError(String messageID, JCSMPException cause, long timestamp) {
+		// Never called
+	}
+
+	public void responseReceived(String messageID) {
+		// Never called
+	}
+}
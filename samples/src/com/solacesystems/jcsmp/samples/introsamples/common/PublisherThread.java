@@ -0,0 +1,108 @@
+/**
+ * PublisherThread.java
+ *
+ * Background thread shared by publishers that send from their own thread.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.JCSMPException;
+
+/**
+ * The background thread of a publisher that hands messages to the producer
+ * from its own thread, such as {@link LingerPublisher}, along with the
+ * state the publisher shares with it: whether the publisher is closed, and
+ * the error of a background send, which is kept and thrown to the
+ * publisher's next caller.
+ *
+ * The state is guarded by the publisher's lock, passed to the constructor,
+ * which the thread's body also waits on: {@link #close()} notifies it.
+ */
+final class PublisherThread {
+	private final Object lock;
+	private final String owner;
+	private final Thread thread;
+
+	// Guarded by lock.
+	private boolean closed = false;
+	private JCSMPException error = null;
+
+	/**
+	 * @param lock the publisher's lock
+	 * @param owner the publisher's name, used for the thread name and in
+	 *            exception messages
+	 * @param body the thread's loop, which returns once
+	 *            {@link #isClosed()} is true and its work is done
+	 */
+	PublisherThread(Object lock, String owner, Runnable body) {
+		this.lock = lock;
+		this.owner = owner;
+		this.thread = new Thread(body, owner + "-thread");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the thread. Call it once the publisher is fully constructed.
+	 */
+	void start() {
+		thread.start();
+	}
+
+	/**
+	 * Called with the lock held.
+	 */
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Checks that the publisher can be used, and throws the error of an
+	 * earlier background send, if any. Called with the lock held.
+	 *
+	 * @throws IllegalStateException if the publisher is closed
+	 */
+	void checkOpen() throws JCSMPException {
+		if (closed)
+			throw new IllegalStateException(owner + " is closed");
+		throwError();
+	}
+
+	/**
+	 * Keeps the error of a background send, for the publisher's next
+	 * caller. Called with the lock held.
+	 */
+	void setError(JCSMPException ex) {
+		error = ex;
+	}
+
+	/**
+	 * Throws the error of an earlier background send, if any, once. Called
+	 * with the lock held.
+	 */
+	void throwError() throws JCSMPException {
+		if (error != null) {
+			JCSMPException ex = error;
+			error = null;
+			throw ex;
+		}
+	}
+
+	/**
+	 * Marks the publisher closed, wakes up the thread, and waits for it to
+	 * exit. Called without the lock held.
+	 *
+	 * @return false if the publisher was already closed
+	 */
+	boolean close() throws InterruptedException {
+		synchronized (lock) {
+			if (closed)
+				return false;
+			closed = true;
+			lock.notifyAll();
+		}
+		thread.join();
+		return true;
+	}
+}
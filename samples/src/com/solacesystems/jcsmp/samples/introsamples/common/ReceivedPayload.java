@@ -0,0 +1,127 @@
+/**
+ * ReceivedPayload.java
+ *
+ * A reference-counted, read-only view of a received message's payload.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+
+/**
+ * Gives access to the payload of a received message as a read-only
+ * ByteBuffer viewing the message's own attachment array, so the payload
+ * is never copied, and lets the payload be handed from the receiving
+ * thread to other threads.
+ *
+ * The payload is reference counted. It starts with one reference; each
+ * thread that keeps it calls {@link #retain()}, and {@link #release()}
+ * when it is done. When the last reference is released, the message is
+ * acknowledged, if requested, and the payload can no longer be read. With
+ * client acknowledgement, a Guaranteed message therefore stays
+ * unacknowledged, and counts against the flow's window, exactly as long as
+ * some thread still uses its payload.
+ *
+ * Instances are thread-safe.
+ */
+public class ReceivedPayload {
+	private final AtomicInteger references = new AtomicInteger(1);
+	private final boolean ackOnRelease;
+	private volatile BytesXMLMessage msg;
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param msg the received message
+	 * @param ackOnRelease whether to acknowledge the message when the last
+	 *            reference is released, for flows with client
+	 *            acknowledgement
+	 */
+	public ReceivedPayload(BytesXMLMessage msg, boolean ackOnRelease) {
+		this.msg = msg;
+		this.ackOnRelease = ackOnRelease;
+		this.buffer = Attachments.view(msg).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return a new read-only view of the payload, positioned at its start
+	 * @throws IllegalStateException if the payload has been released
+	 */
+	public ByteBuffer getBuffer() {
+		checkReferenced();
+		return buffer.duplicate();
+	}
+
+	/**
+	 * The payload length.
+	 */
+	public int getLength() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * @return the message
+	 * @throws IllegalStateException if the payload has been released
+	 */
+	public BytesXMLMessage getMessage() {
+		BytesXMLMessage current = msg;
+		if (current == null)
+			throw new IllegalStateException("Payload released");
+		return current;
+	}
+
+	/**
+	 * Adds a reference.
+	 *
+	 * @throws IllegalStateException if the payload has been released
+	 */
+	public ReceivedPayload retain() {
+		while (true) {
+			int count = references.get();
+			if (count == 0)
+				throw new IllegalStateException("Payload released");
+			if (references.compareAndSet(count, count + 1))
+				return this;
+		}
+	}
+
+	/**
+	 * Removes a reference. Releasing the last reference acknowledges the
+	 * message if requested.
+	 *
+	 * @return whether this was the last reference
+	 * @throws IllegalStateException if the payload has been released
+	 */
+	public boolean release() {
+		while (true) {
+			int count = references.get();
+			if (count == 0)
+				throw new IllegalStateException("Payload released");
+			if (references.compareAndSet(count, count - 1)) {
+				if (count > 1)
+					return false;
+				BytesXMLMessage released = msg;
+				msg = null;
+				if (ackOnRelease)
+					released.ackMessage();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * The number of references.
+	 */
+	public int getReferenceCount() {
+		return references.get();
+	}
+
+	private void checkReferenced() {
+		if (references.get() == 0)
+			throw new IllegalStateException("Payload released");
+	}
+}
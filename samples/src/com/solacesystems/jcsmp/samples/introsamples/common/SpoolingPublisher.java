@@ -0,0 +1,354 @@
+/**
+ * SpoolingPublisher.java
+ *
+ * Client-side store-and-forward of Guaranteed messages while the session
+ * is reconnecting.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.ClosedFacilityException;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.JCSMPTransportException;
+import com.solacesystems.jcsmp.SessionEventArgs;
+import com.solacesystems.jcsmp.SessionEventHandler;
+import com.solacesystems.jcsmp.StaleSessionException;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Publishes Guaranteed messages, and spools them to a {@link MessageSpool}
+ * instead while the session is reconnecting, so that publishing threads
+ * are not stalled by a reconnect.
+ *
+ * Spooling starts on {@link com.solacesystems.jcsmp.SessionEvent#RECONNECTING},
+ * or when a send fails with a {@link JCSMPTransportException} before that
+ * event arrives: the message is then spooled rather than lost. A drain
+ * thread publishes the spooled messages in order, with the normal
+ * acknowledgement handling of the producer, once the session has
+ * reconnected. Messages published while the spool is being drained are
+ * appended to it, so that they are not sent ahead of older messages.
+ *
+ * A spooled message is only removed once it has been sent. If the session
+ * starts reconnecting again while draining, the drain thread waits for
+ * {@link com.solacesystems.jcsmp.SessionEvent#RECONNECTED}; if a send
+ * fails with a JCSMPTransportException, it retries after
+ * {@link #RETRY_MILLIS}, or as soon as the session has reconnected,
+ * whichever comes first. A message whose send fails for another reason,
+ * for instance because it is too large or not permitted, would fail
+ * again: it is removed from the spool and passed to the
+ * {@link FailureListener}, and draining goes on.
+ *
+ * On {@link com.solacesystems.jcsmp.SessionEvent#DOWN_ERROR}, or when the
+ * producer turns out to be closed, the session will not reconnect:
+ * draining stops, publish() throws, including in threads waiting for
+ * space in the spool, and messages still spooled are not sent.
+ *
+ * A message that is already being sent when the session starts
+ * reconnecting is handled by the producer as usual: the send either
+ * completes after the reconnect or throws.
+ *
+ * The SpoolingPublisher must receive the session's events: either pass it
+ * to JCSMPFactory.createSession() as the SessionEventHandler, or forward
+ * events to {@link #handleEvent(SessionEventArgs)}.
+ */
+public class SpoolingPublisher implements SessionEventHandler {
+	/** Delay before the drain thread retries after a transport failure. */
+	public static final long RETRY_MILLIS = 1000;
+
+	/**
+	 * What {@link SpoolingPublisher#publish(String, byte[])} does when the
+	 * spool is full.
+	 */
+	public enum OverflowPolicy {
+		/** publish() returns false, and the message is dropped. */
+		REJECT,
+		/** publish() waits until the drain thread frees space. */
+		BLOCK
+	}
+
+	/**
+	 * Notified when a spooled message is dropped because it cannot be
+	 * sent. Invoked from the drain thread.
+	 */
+	public interface FailureListener {
+		void onFailure(String topic, byte[] payload, JCSMPException cause);
+	}
+
+	private final MessageSpool spool;
+	private final OverflowPolicy policy;
+	private final Object lock = new Object();
+
+	private XMLMessageProducer prod;
+	private volatile FailureListener failureListener;
+	// Guarded by lock. Set between RECONNECTING and RECONNECTED.
+	private boolean reconnecting = false;
+	// Guarded by lock. Set while the drain thread runs, which it does
+	// whenever messages are spooled.
+	private boolean draining = false;
+	private boolean down = false;
+	private long spooledCount = 0;
+	private long rejectedCount = 0;
+	private long failedCount = 0;
+
+	/**
+	 * @param spool an empty spool, only used through this SpoolingPublisher
+	 * @param policy what to do when the spool is full
+	 */
+	public SpoolingPublisher(MessageSpool spool, OverflowPolicy policy) {
+		this.spool = spool;
+		this.policy = policy;
+	}
+
+	/**
+	 * Sets the producer used to send messages. Must be called before the
+	 * first publish().
+	 */
+	public void setProducer(XMLMessageProducer prod) {
+		synchronized (lock) {
+			this.prod = prod;
+		}
+	}
+
+	/**
+	 * Sets the listener notified of spooled messages that cannot be sent.
+	 * Without one, they are reported on System.err.
+	 */
+	public void setFailureListener(FailureListener failureListener) {
+		this.failureListener = failureListener;
+	}
+
+	/**
+	 * Publishes a Guaranteed message, or spools it if the session is
+	 * reconnecting, older messages are still spooled, or the send fails
+	 * with a transport error.
+	 *
+	 * @return false if the message was dropped because the spool is full
+	 *         and the policy is REJECT
+	 * @throws JCSMPTransportException if the session is down
+	 * @throws InterruptedException if interrupted while waiting for space
+	 *             in the spool
+	 */
+	public boolean publish(String topic, byte[] payload) throws JCSMPException, InterruptedException {
+		synchronized (lock) {
+			if (down)
+				throw new JCSMPTransportException("Session is down");
+			if (reconnecting || draining)
+				return spool(topic, payload);
+		}
+		try {
+			send(topic, payload);
+			return true;
+		} catch (JCSMPTransportException ex) {
+			// The connection failed before RECONNECTING arrived, if it
+			// arrives at all: spool the message rather than lose it.
+			synchronized (lock) {
+				if (down)
+					throw ex;
+				return spool(topic, payload);
+			}
+		}
+	}
+
+	public void handleEvent(SessionEventArgs event) {
+		switch (event.getEvent()) {
+		case RECONNECTING:
+			synchronized (lock) {
+				reconnecting = true;
+			}
+			break;
+		case RECONNECTED:
+			synchronized (lock) {
+				reconnecting = false;
+				// Wakes up a drain thread waiting for the reconnect.
+				lock.notifyAll();
+				if (spool.size() > 0)
+					startDraining();
+			}
+			break;
+		case DOWN_ERROR:
+			shutDown();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * The number of messages spooled so far.
+	 */
+	public long getSpooledCount() {
+		synchronized (lock) {
+			return spooledCount;
+		}
+	}
+
+	/**
+	 * The number of messages dropped because the spool was full.
+	 */
+	public long getRejectedCount() {
+		synchronized (lock) {
+			return rejectedCount;
+		}
+	}
+
+	/**
+	 * The number of spooled messages dropped because they could not be
+	 * sent.
+	 */
+	public long getFailedCount() {
+		synchronized (lock) {
+			return failedCount;
+		}
+	}
+
+	/**
+	 * Whether messages are currently spooled rather than sent. False once
+	 * the session is down.
+	 */
+	public boolean isSpooling() {
+		synchronized (lock) {
+			return !down && (reconnecting || draining);
+		}
+	}
+
+	/**
+	 * Whether the session went down, after which nothing more is sent.
+	 */
+	public boolean isDown() {
+		synchronized (lock) {
+			return down;
+		}
+	}
+
+	/*
+	 * Stops draining and wakes up threads waiting for space in the spool,
+	 * which then throw.
+	 */
+	private void shutDown() {
+		synchronized (lock) {
+			down = true;
+			lock.notifyAll();
+		}
+	}
+
+	/*
+	 * Appends a message to the spool, waiting for space according to the
+	 * policy, and makes sure the drain thread runs to send it. Called with
+	 * the lock held.
+	 */
+	private boolean spool(String topic, byte[] payload) throws JCSMPException, InterruptedException {
+		while (!spool.append(topic, payload)) {
+			if (policy == OverflowPolicy.REJECT) {
+				rejectedCount++;
+				return false;
+			}
+			lock.wait();
+			if (down)
+				throw new JCSMPTransportException("Session is down");
+		}
+		spooledCount++;
+		startDraining();
+		return true;
+	}
+
+	/*
+	 * Starts the drain thread, unless it is running. Called with the lock
+	 * held.
+	 */
+	private void startDraining() {
+		if (draining)
+			return;
+		draining = true;
+		Thread drainer = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "SpoolingPublisher-drainer");
+		drainer.setDaemon(true);
+		drainer.start();
+	}
+
+	private void send(String topic, byte[] payload) throws JCSMPException {
+		BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+		msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+		msg.writeAttachment(payload);
+		prod.send(msg, JCSMPFactory.onlyInstance().createTopic(topic));
+	}
+
+	/*
+	 * Sends spooled messages in order until the spool is empty or the
+	 * session goes down, waiting while the session reconnects.
+	 */
+	private void drain() {
+		while (true) {
+			MessageSpool.Record record;
+			synchronized (lock) {
+				try {
+					while (reconnecting && !down)
+						lock.wait();
+				} catch (InterruptedException ex) {
+					// Nothing interrupts this thread: give up draining.
+					Thread.currentThread().interrupt();
+					draining = false;
+					lock.notifyAll();
+					return;
+				}
+				record = spool.peek();
+				if (down || record == null) {
+					draining = false;
+					lock.notifyAll();
+					return;
+				}
+			}
+			try {
+				send(record.topic, record.payload);
+			} catch (JCSMPTransportException ex) {
+				// Keep the record, and retry it later; RECONNECTED wakes
+				// this thread up early.
+				System.err.println("SpoolingPublisher: send failed, retrying, " + ex.getMessage());
+				synchronized (lock) {
+					try {
+						lock.wait(RETRY_MILLIS);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						draining = false;
+						lock.notifyAll();
+						return;
+					}
+				}
+				continue;
+			} catch (StaleSessionException ex) {
+				System.err.println("SpoolingPublisher: session closed, " + ex.getMessage());
+				shutDown();
+				continue;
+			} catch (ClosedFacilityException ex) {
+				System.err.println("SpoolingPublisher: producer closed, " + ex.getMessage());
+				shutDown();
+				continue;
+			} catch (JCSMPException ex) {
+				// Sending it again would fail the same way: drop it rather
+				// than hold up the messages behind it.
+				synchronized (lock) {
+					spool.remove();
+					failedCount++;
+					lock.notifyAll();
+				}
+				FailureListener fl = failureListener;
+				if (fl != null)
+					fl.onFailure(record.topic, record.payload, ex);
+				else
+					System.err.println("SpoolingPublisher: dropped a message to " + record.topic + ", " + ex.getMessage());
+				continue;
+			}
+			synchronized (lock) {
+				spool.remove();
+				lock.notifyAll();
+			}
+		}
+	}
+}
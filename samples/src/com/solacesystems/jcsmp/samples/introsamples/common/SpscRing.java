@@ -0,0 +1,103 @@
+/**
+ * SpscRing.java
+ *
+ * Bounded, lock-free single-producer / single-consumer ring buffer.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring buffer for handing elements from one producer thread to
+ * one consumer thread without locking.
+ *
+ * The slots are allocated once. The producer only writes the tail and the
+ * consumer only writes the head, with ordered (lazySet) stores, so neither
+ * side ever waits for the other or executes a compare-and-set. Each side
+ * also keeps the last value it read of the other side's position, and
+ * only reads it again when the ring looks full or empty.
+ *
+ * {@link #offer(Object)} and {@link #poll()} never block; see
+ * {@link WaitStrategy} for how to wait on them.
+ */
+public final class SpscRing<E> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	// Next position to poll, written by the consumer.
+	private final AtomicLong head = new AtomicLong();
+	// Next position to offer, written by the producer.
+	private final AtomicLong tail = new AtomicLong();
+	// Only accessed by the producer thread.
+	private long cachedHead = 0;
+	// Only accessed by the consumer thread.
+	private long cachedTail = 0;
+
+	/**
+	 * @param capacity the ring capacity, rounded up to a power of two
+	 */
+	public SpscRing(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		int size = 1;
+		while (size < capacity)
+			size <<= 1;
+		this.capacity = size;
+		this.mask = size - 1;
+		this.elements = new AtomicReferenceArray<E>(size);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Adds an element. Producer thread only.
+	 *
+	 * @return false if the ring is full
+	 */
+	public boolean offer(E e) {
+		if (e == null)
+			throw new NullPointerException();
+		long pos = tail.get();
+		if (pos - cachedHead >= capacity) {
+			cachedHead = head.get();
+			if (pos - cachedHead >= capacity)
+				return false;
+		}
+		elements.lazySet((int) (pos & mask), e);
+		tail.lazySet(pos + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element. Consumer thread only.
+	 *
+	 * @return the element, or null if the ring is empty
+	 */
+	public E poll() {
+		long pos = head.get();
+		if (pos >= cachedTail) {
+			cachedTail = tail.get();
+			if (pos >= cachedTail)
+				return null;
+		}
+		int index = (int) (pos & mask);
+		E e = elements.get(index);
+		elements.lazySet(index, null);
+		head.lazySet(pos + 1);
+		return e;
+	}
+
+	/**
+	 * An estimate of the number of elements in the ring, from any thread.
+	 */
+	public int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity));
+	}
+}
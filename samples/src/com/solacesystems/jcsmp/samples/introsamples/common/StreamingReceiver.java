@@ -0,0 +1,267 @@
+/**
+ * StreamingReceiver.java
+ *
+ * Incremental reassembly of payloads published by a StreamingSender.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.SDTException;
+import com.solacesystems.jcsmp.SDTMap;
+import com.solacesystems.jcsmp.XMLMessageListener;
+
+/**
+ * An {@link XMLMessageListener} that writes the segments of each payload
+ * published by a {@link StreamingSender} to a channel as they arrive,
+ * instead of assembling the payload in memory. The channel is supplied by
+ * a {@link StreamHandler}, and can for instance be a file, so that any
+ * number of large payloads can be received concurrently with a small,
+ * constant heap.
+ *
+ * Segments are written straight from the received message's attachment
+ * buffer. They must arrive in order, as they do on a single topic
+ * subscription or flow: redelivered segments already written are
+ * ignored, and a missing segment fails the payload. A payload that
+ * receives no segment for the idle timeout also fails. The ids of the
+ * most recently completed or failed payloads are remembered, so that
+ * their redelivered segments are ignored rather than starting the payload
+ * over.
+ *
+ * A channel in non-blocking mode is waited on until it accepts each
+ * segment, which holds up the delivery of other messages meanwhile. The
+ * receiver waits with a single selector, kept until {@link #close()}.
+ *
+ * Messages that are not segments are passed to an optional delegate
+ * listener. Instances are not thread-safe: a listener is called by one
+ * thread at a time.
+ */
+public class StreamingReceiver implements XMLMessageListener {
+	// Number of finished payload ids remembered to ignore redeliveries.
+	private static final int MAX_FINISHED_STREAMS = 1024;
+
+	/**
+	 * Supplies the channels that payloads are written to, and is notified
+	 * when a payload is complete or has failed.
+	 */
+	public interface StreamHandler {
+		/**
+		 * Called on the first segment of a payload.
+		 *
+		 * @param length the payload length
+		 * @return the channel to write the payload to
+		 */
+		WritableByteChannel open(String streamId, long length) throws IOException;
+
+		/**
+		 * Called once the whole payload has been written to the channel.
+		 * The handler is responsible for closing the channel.
+		 */
+		void completed(String streamId, WritableByteChannel channel);
+
+		/**
+		 * Called if the payload cannot be completed. The channel, if it was
+		 * opened, is already closed.
+		 */
+		void failed(String streamId, Exception cause);
+	}
+
+	/*
+	 * A payload being received.
+	 */
+	private static final class Stream {
+		final WritableByteChannel channel;
+		final int segmentCount;
+		int nextIndex = 0;
+		long lastActivity;
+
+		Stream(WritableByteChannel channel, int segmentCount) {
+			this.channel = channel;
+			this.segmentCount = segmentCount;
+		}
+	}
+
+	private final StreamHandler handler;
+	private final XMLMessageListener delegate;
+	private final long idleTimeoutMillis;
+	private final ChannelWaiter waiter = new ChannelWaiter();
+	private final Map<String, Stream> streams = new HashMap<String, Stream>();
+	// Ids of the last completed or failed payloads, oldest first.
+	private final Map<String, Boolean> finished = new LinkedHashMap<String, Boolean>() {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_FINISHED_STREAMS;
+		}
+	};
+	private Clock clock = Clocks.SYSTEM;
+	private long completedCount = 0;
+	private long failedCount = 0;
+
+	/**
+	 * @param handler supplies channels and receives outcomes
+	 * @param delegate receives messages that are not segments, or null to
+	 *            ignore them
+	 * @param idleTimeoutMillis how long a payload may wait for its next
+	 *            segment
+	 */
+	public StreamingReceiver(StreamHandler handler, XMLMessageListener delegate, long idleTimeoutMillis) {
+		this.handler = handler;
+		this.delegate = delegate;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	public void onReceive(BytesXMLMessage msg) {
+		long now = clock.currentTimeMillis();
+		expireIdle(now);
+
+		SDTMap props = msg.getProperties();
+		if (props == null || !props.containsKey(StreamingSender.STREAM_ID_PROPERTY)) {
+			if (delegate != null)
+				delegate.onReceive(msg);
+			return;
+		}
+
+		String streamId = null;
+		try {
+			streamId = props.getString(StreamingSender.STREAM_ID_PROPERTY);
+			if (finished.containsKey(streamId)) {
+				// A redelivery of a payload that has completed or failed.
+				return;
+			}
+			int index = props.getInteger(StreamingSender.SEGMENT_INDEX_PROPERTY);
+			Stream stream = streams.get(streamId);
+			if (stream == null) {
+				if (index != 0) {
+					// The start of the payload was missed, or the payload
+					// finished too long ago to be remembered.
+					return;
+				}
+				long length = props.getLong(StreamingSender.STREAM_LENGTH_PROPERTY);
+				int count = props.getInteger(StreamingSender.SEGMENT_COUNT_PROPERTY);
+				stream = new Stream(handler.open(streamId, length), count);
+				streams.put(streamId, stream);
+			}
+			stream.lastActivity = now;
+			if (index < stream.nextIndex)
+				return;
+			if (index > stream.nextIndex)
+				throw new IOException("Missing segment " + stream.nextIndex + ", received " + index);
+
+			ByteBuffer segment = msg.getAttachmentByteBuffer();
+			while (segment != null && segment.hasRemaining()) {
+				// A non-blocking channel writes nothing until it has room.
+				if (stream.channel.write(segment) == 0)
+					waiter.awaitReady(stream.channel, SelectionKey.OP_WRITE);
+			}
+			stream.nextIndex++;
+			if (stream.nextIndex == stream.segmentCount) {
+				// The handler takes over the channel.
+				waiter.release(stream.channel);
+				streams.remove(streamId);
+				finished.put(streamId, Boolean.TRUE);
+				completedCount++;
+				handler.completed(streamId, stream.channel);
+			}
+		} catch (SDTException ex) {
+			fail(streamId, ex);
+		} catch (IOException ex) {
+			fail(streamId, ex);
+		}
+	}
+
+	/**
+	 * Closes the selector used to wait on non-blocking channels. Call it
+	 * once the consumer is stopped; the channels of payloads still being
+	 * received are left open.
+	 */
+	public void close() throws IOException {
+		waiter.close();
+	}
+
+	/**
+	 * Sets the clock used to track idle payloads, read on every message.
+	 * Defaults to {@link Clocks#SYSTEM}.
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
+	public void onException(JCSMPException exception) {
+		if (delegate != null)
+			delegate.onException(exception);
+	}
+
+	/**
+	 * The number of payloads completed.
+	 */
+	public long getCompletedCount() {
+		return completedCount;
+	}
+
+	/**
+	 * The number of payloads failed.
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * The number of payloads being received.
+	 */
+	public int getActiveCount() {
+		return streams.size();
+	}
+
+	/**
+	 * Fails the payloads that have been idle for longer than the timeout.
+	 * Called on every message; call it from the receiving thread to also
+	 * expire payloads when no message arrives.
+	 */
+	public void expireIdle(long now) {
+		Iterator<Map.Entry<String, Stream>> it = streams.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Stream> entry = it.next();
+			if (now - entry.getValue().lastActivity > idleTimeoutMillis) {
+				it.remove();
+				finished.put(entry.getKey(), Boolean.TRUE);
+				closeQuietly(entry.getValue().channel);
+				failedCount++;
+				handler.failed(entry.getKey(), new TimeoutException("No segment received for " + idleTimeoutMillis + " ms"));
+			}
+		}
+	}
+
+	private void fail(String streamId, Exception cause) {
+		failedCount++;
+		if (streamId == null) {
+			onException(new JCSMPException("Invalid segment message", cause));
+			return;
+		}
+		Stream stream = streams.remove(streamId);
+		finished.put(streamId, Boolean.TRUE);
+		if (stream != null)
+			closeQuietly(stream.channel);
+		handler.failed(streamId, cause);
+	}
+
+	private static void closeQuietly(WritableByteChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * StreamingSender.java
+ *
+ * Publishing of large payloads in segments, read directly from a stream
+ * or channel.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.util.UUID;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.DeliveryMode;
+import com.solacesystems.jcsmp.Destination;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.SDTMap;
+import com.solacesystems.jcsmp.XMLMessageProducer;
+
+/**
+ * Publishes a payload of any size as a sequence of Guaranteed messages,
+ * each holding one segment, read from an InputStream or a channel as it is
+ * sent. The payload never has to be held in memory as a whole.
+ *
+ * Segments are read into a single buffer, reused for every segment. The
+ * API copies each segment into its message, and keeps the message until
+ * it is acknowledged; once the publish window (PUB_ACK_WINDOW_SIZE) is
+ * full, send() blocks. Memory used by a transfer is therefore bounded by
+ * the segment size times the window size.
+ *
+ * Each segment message carries these user properties:
+ *  - {@link #STREAM_ID_PROPERTY}: an id shared by all segments of a
+ *    payload.
+ *  - {@link #SEGMENT_INDEX_PROPERTY}: the segment's index, from 0.
+ *  - {@link #SEGMENT_COUNT_PROPERTY}: the number of segments.
+ *  - {@link #STREAM_LENGTH_PROPERTY}: the payload length.
+ *
+ * An empty payload is sent as a single empty segment. A sender waits on
+ * non-blocking channels with a selector it keeps until {@link #close()}.
+ * Instances are not thread-safe.
+ */
+public class StreamingSender {
+	/** User property holding the id of the payload. */
+	public static final String STREAM_ID_PROPERTY = "sample_stream_id";
+	/** User property holding the index of the segment. */
+	public static final String SEGMENT_INDEX_PROPERTY = "sample_segment_index";
+	/** User property holding the number of segments. */
+	public static final String SEGMENT_COUNT_PROPERTY = "sample_segment_count";
+	/** User property holding the payload length. */
+	public static final String STREAM_LENGTH_PROPERTY = "sample_stream_length";
+
+	/*
+	 * Fills a buffer from the payload source.
+	 */
+	private interface Source {
+		/**
+		 * Blocks until at least one byte is read.
+		 *
+		 * @return the number of bytes read, or -1 at the end of the source
+		 */
+		int read(byte[] buf, int offset, int length) throws IOException;
+	}
+
+	private final XMLMessageProducer prod;
+	private final byte[] segment;
+	private final ChannelWaiter waiter = new ChannelWaiter();
+
+	/**
+	 * @param prod the producer
+	 * @param segmentSize the payload bytes per message
+	 */
+	public StreamingSender(XMLMessageProducer prod, int segmentSize) {
+		if (segmentSize < 1)
+			throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+		this.prod = prod;
+		this.segment = new byte[segmentSize];
+	}
+
+	/**
+	 * Publishes length bytes read from a stream.
+	 *
+	 * @return the stream id of the payload
+	 * @throws IOException if the stream fails or ends early
+	 */
+	public String send(final InputStream in, long length, Destination dest) throws JCSMPException, IOException {
+		return send(new Source() {
+			public int read(byte[] buf, int offset, int len) throws IOException {
+				return in.read(buf, offset, len);
+			}
+		}, length, dest);
+	}
+
+	/**
+	 * Publishes length bytes read from a channel. A channel in non-blocking
+	 * mode is waited on until it has data; it is registered with the
+	 * sender's selector only until send() returns.
+	 *
+	 * @return the stream id of the payload
+	 * @throws IOException if the channel fails or ends early
+	 */
+	public String send(final ReadableByteChannel channel, long length, Destination dest)
+		throws JCSMPException, IOException {
+		try {
+			return send(new Source() {
+				public int read(byte[] buf, int offset, int len) throws IOException {
+					ByteBuffer dst = ByteBuffer.wrap(buf, offset, len);
+					int n;
+					// A non-blocking channel reads nothing until it has data.
+					while ((n = channel.read(dst)) == 0)
+						waiter.awaitReady(channel, SelectionKey.OP_READ);
+					return n;
+				}
+			}, length, dest);
+		} finally {
+			waiter.release(channel);
+		}
+	}
+
+	/**
+	 * Publishes the whole content of a file. The channel's position is not
+	 * changed.
+	 *
+	 * @return the stream id of the payload
+	 */
+	public String send(final FileChannel file, Destination dest) throws JCSMPException, IOException {
+		return send(new Source() {
+			private long position = 0;
+
+			public int read(byte[] buf, int offset, int len) throws IOException {
+				int n = file.read(ByteBuffer.wrap(buf, offset, len), position);
+				if (n > 0)
+					position += n;
+				return n;
+			}
+		}, file.size(), dest);
+	}
+
+	/**
+	 * Closes the selector used to wait on non-blocking channels. The sender
+	 * may still be used, and opens a new one if it needs to.
+	 */
+	public void close() throws IOException {
+		waiter.close();
+	}
+
+	private String send(Source source, long length, Destination dest) throws JCSMPException, IOException {
+		if (length < 0)
+			throw new IllegalArgumentException("Invalid length: " + length);
+		long count = Math.max(1, (length + segment.length - 1) / segment.length);
+		if (count > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many segments: " + count);
+		String streamId = UUID.randomUUID().toString();
+
+		long remaining = length;
+		for (int index = 0; index < count; index++) {
+			int size = (int) Math.min(segment.length, remaining);
+			int filled = 0;
+			while (filled < size) {
+				int n = source.read(segment, filled, size - filled);
+				if (n < 0)
+					throw new IOException("Source ended after " + (length - remaining + filled) + " of " + length + " bytes");
+				filled += n;
+			}
+			remaining -= size;
+
+			BytesXMLMessage msg = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+			msg.setDeliveryMode(DeliveryMode.PERSISTENT);
+			if (size > 0)
+				msg.writeAttachment(segment, 0, size);
+			SDTMap props = JCSMPFactory.onlyInstance().createMap();
+			props.putString(STREAM_ID_PROPERTY, streamId);
+			props.putInteger(SEGMENT_INDEX_PROPERTY, index);
+			props.putInteger(SEGMENT_COUNT_PROPERTY, (int) count);
+			props.putLong(STREAM_LENGTH_PROPERTY, length);
+			msg.setProperties(props);
+			// Blocks while the publish window is full.
+			prod.send(msg, dest);
+		}
+		return streamId;
+	}
+}
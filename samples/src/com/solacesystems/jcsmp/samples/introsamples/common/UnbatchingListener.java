@@ -0,0 +1,82 @@
+/**
+ * UnbatchingListener.java
+ *
+ * Splits envelopes published by a BatchingPublisher back into individual
+ * messages.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import com.solacesystems.jcsmp.BytesXMLMessage;
+import com.solacesystems.jcsmp.JCSMPException;
+import com.solacesystems.jcsmp.JCSMPFactory;
+import com.solacesystems.jcsmp.SDTException;
+import com.solacesystems.jcsmp.SDTStream;
+import com.solacesystems.jcsmp.StreamMessage;
+import com.solacesystems.jcsmp.XMLMessageListener;
+
+/**
+ * An {@link XMLMessageListener} that passes each payload of a
+ * {@link BatchingPublisher} envelope to a delegate listener as a separate
+ * {@link BytesXMLMessage}, in publish order. Other messages are passed to
+ * the delegate unchanged.
+ *
+ * Unbatched messages only carry their payload, as a binary attachment.
+ * While the delegate handles them, {@link #getCurrentEnvelope()} returns
+ * the envelope they came from, which gives access to the destination,
+ * delivery mode and other header fields.
+ *
+ * If an envelope cannot be decoded, the delegate's onException() is called
+ * and the rest of the envelope is dropped.
+ */
+public class UnbatchingListener implements XMLMessageListener {
+	private final XMLMessageListener delegate;
+	private BytesXMLMessage envelope = null;
+	private long envelopeCount = 0;
+
+	public UnbatchingListener(XMLMessageListener delegate) {
+		this.delegate = delegate;
+	}
+
+	public void onReceive(BytesXMLMessage msg) {
+		if (!(msg instanceof StreamMessage) || !BatchingPublisher.BATCH_MESSAGE_TYPE.equals(msg.getApplicationMessageType())) {
+			delegate.onReceive(msg);
+			return;
+		}
+		envelope = msg;
+		envelopeCount++;
+		try {
+			SDTStream stream = ((StreamMessage) msg).getStream();
+			while (stream.hasRemaining()) {
+				BytesXMLMessage unbatched = JCSMPFactory.onlyInstance().createMessage(BytesXMLMessage.class);
+				unbatched.writeAttachment(stream.readBytes());
+				delegate.onReceive(unbatched);
+			}
+		} catch (SDTException ex) {
+			delegate.onException(ex);
+		} finally {
+			envelope = null;
+		}
+	}
+
+	public void onException(JCSMPException exception) {
+		delegate.onException(exception);
+	}
+
+	/**
+	 * The envelope being split, or null outside of an unbatched message
+	 * callback. Only valid on the thread calling the delegate.
+	 */
+	public BytesXMLMessage getCurrentEnvelope() {
+		return envelope;
+	}
+
+	/**
+	 * The number of envelopes received.
+	 */
+	public long getEnvelopeCount() {
+		return envelopeCount;
+	}
+}
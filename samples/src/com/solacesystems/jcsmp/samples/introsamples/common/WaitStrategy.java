@@ -0,0 +1,132 @@
+/**
+ * WaitStrategy.java
+ *
+ * How a thread waits on a lock-free ring.
+ *
+ * Copyright 2012-2020 Solace Corporation. All rights reserved.
+ */
+
+package com.solacesystems.jcsmp.samples.introsamples.common;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for a lock-free ring, such as an {@link SpscRing}, to
+ * become non-empty or non-full. Each waiting side uses its own
+ * {@link Waiter}, and the other side signals it after changing the ring:
+ *
+ * <pre>
+ * int idle = 0;
+ * while ((e = ring.poll()) == null)
+ *     notEmpty.idle(idle++);
+ * notFull.signal();
+ * </pre>
+ *
+ * The strategies trade CPU use for wake-up latency:
+ *  - {@link #BLOCKING} spins briefly, then parks the thread until it is
+ *    signalled. It uses no CPU while idle, but waking a parked thread
+ *    takes several microseconds.
+ *  - {@link #YIELDING} spins briefly, then yields the CPU between checks.
+ *  - {@link #BUSY_SPIN} checks continuously. It has the lowest latency,
+ *    and keeps a core busy even while idle; only use it with a core per
+ *    waiting thread.
+ */
+public enum WaitStrategy {
+	BLOCKING {
+		public Waiter newWaiter() {
+			return new BlockingWaiter();
+		}
+	},
+	YIELDING {
+		public Waiter newWaiter() {
+			return YIELDING_WAITER;
+		}
+	},
+	BUSY_SPIN {
+		public Waiter newWaiter() {
+			return SPINNING_WAITER;
+		}
+	};
+
+	// Number of idle calls spent spinning before yielding or parking.
+	private static final int SPIN_TRIES = 100;
+	// Longest park, a safety net should a thread not be signalled.
+	private static final long MAX_PARK_NANOS = 1000000;
+
+	/**
+	 * Waits on behalf of one thread, and is signalled by the other.
+	 */
+	public interface Waiter {
+		/**
+		 * Waits a little, after the ring was found empty or full.
+		 *
+		 * @param idleCount the number of previous calls since the thread
+		 *            last made progress
+		 */
+		void idle(int idleCount);
+
+		/**
+		 * Wakes up the waiting thread, if it is waiting. Call it after
+		 * every change to the ring that the other side may be waiting for.
+		 */
+		void signal();
+	}
+
+	/**
+	 * @return a waiter for one waiting thread
+	 */
+	public abstract Waiter newWaiter();
+
+	private static final Waiter SPINNING_WAITER = new Waiter() {
+		public void idle(int idleCount) {
+		}
+
+		public void signal() {
+		}
+	};
+
+	private static final Waiter YIELDING_WAITER = new Waiter() {
+		public void idle(int idleCount) {
+			if (idleCount >= SPIN_TRIES)
+				Thread.yield();
+		}
+
+		public void signal() {
+		}
+	};
+
+	/*
+	 * Parks after spinning. signal() sets a flag, then unparks the
+	 * registered thread; the waiting thread registers itself, then only
+	 * parks if the flag is clear. A signal sent after the caller found the
+	 * ring empty or full is therefore never lost, even if it arrives
+	 * before the registration: either the waiting thread sees the flag, or
+	 * signal() sees the thread.
+	 */
+	private static final class BlockingWaiter implements Waiter {
+		// Set by signal(), cleared by the waiting thread after it wakes.
+		private final AtomicBoolean signalled = new AtomicBoolean();
+		private volatile Thread waiter = null;
+
+		public void idle(int idleCount) {
+			if (idleCount < SPIN_TRIES)
+				return;
+			waiter = Thread.currentThread();
+			if (!signalled.get())
+				LockSupport.parkNanos(this, MAX_PARK_NANOS);
+			waiter = null;
+			// Clear the flag before the caller checks the ring again. The
+			// compare-and-set reads the latest signal, so that the changes
+			// made before it are visible to that check.
+			signalled.compareAndSet(true, false);
+		}
+
+		public void signal() {
+			signalled.set(true);
+			Thread thread = waiter;
+			if (thread != null)
+				LockSupport.unpark(thread);
+		}
+	}
+}